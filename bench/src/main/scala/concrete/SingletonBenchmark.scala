@@ -0,0 +1,67 @@
+package concrete
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+
+import scala.util.Random
+
+/**
+  * Interning of singleton domains, as done on every decision of an
+  * assignment-heavy search. Run with several threads (e.g. "-t 4") to
+  * measure contention between solvers sharing a JVM.
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class SingletonBenchmark {
+
+  /**
+    * Upper bound of the domains. Values above Singleton.WINDOW_UB are
+    * interned through the fallback map.
+    */
+  @Param(Array("100", "1000000"))
+  var domainSize: Int = _
+
+  private val NB_VARIABLES = 100
+
+  private val NB_DECISIONS = 4096
+
+  private var variables: Array[Variable] = _
+  private var init: ProblemState = _
+  private var decisions: Array[Int] = _
+  private var cursor = 0
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    val rand = new Random(0)
+    variables = Array.tabulate(NB_VARIABLES)(i => new Variable(s"X$i", IntDomain.ofInterval(0, domainSize - 1)))
+    init = Problem(variables: _*).initState.toState
+    decisions = Array.fill(NB_DECISIONS)(rand.nextInt(domainSize))
+  }
+
+  /**
+    * Assigns all variables, one decision at a time
+    */
+  @Benchmark
+  def assign(): ProblemState = {
+    var ps = init
+    var i = 0
+    while (i < NB_VARIABLES) {
+      ps = ps.assign(variables(i), decisions((cursor + i) % NB_DECISIONS))
+      i += 1
+    }
+    cursor += 1
+    ps
+  }
+
+  @Benchmark
+  def intern(): Singleton = {
+    cursor += 1
+    Singleton(decisions(cursor % NB_DECISIONS))
+  }
+
+}
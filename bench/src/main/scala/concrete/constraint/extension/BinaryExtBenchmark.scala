@@ -0,0 +1,93 @@
+package concrete.constraint.extension
+
+import java.util.concurrent.TimeUnit
+
+import bitvectors.BitVector
+import concrete._
+import concrete.constraint.AdviseCount
+import org.openjdk.jmh.annotations._
+
+import scala.util.Random
+
+/**
+  * Revisions of binary extensional constraints on dense random binary CSPs.
+  * Throughput mode gives revisions per second. Domains of the states are
+  * randomly reduced so that residues are invalidated from time to time.
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class BinaryExtBenchmark {
+
+  @Param(Array("BinaryExtR", "BinaryExtNR", "BinaryExtBit"))
+  var algorithm: String = _
+
+  @Param(Array("50", "500"))
+  var domainSize: Int = _
+
+  /**
+    * Proportion of forbidden tuples
+    */
+  @Param(Array("0.5", "0.9"))
+  var tightness: Double = _
+
+  /**
+    * Proportion of values kept in the domains of the states
+    */
+  @Param(Array("0.3"))
+  var density: Double = _
+
+  private val NB_CONSTRAINTS = 64
+
+  private val NB_STATES = 256
+
+  private val modified = BitVector.filled(2)
+
+  private var constraints: Array[BinaryExt] = _
+  private var states: Array[ProblemState] = _
+  private var cursor = 0
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    val rand = new Random(0)
+    val variables = Array.tabulate(2 * NB_CONSTRAINTS)(i => new Variable(s"X$i", IntDomain(0 until domainSize)))
+    val problem = Problem(variables: _*)
+
+    constraints = Array.tabulate(NB_CONSTRAINTS) { i =>
+      val matrix = new Matrix2D(domainSize, domainSize, 0, 0, false)
+      for (a <- 0 until domainSize; b <- 0 until domainSize if rand.nextDouble() >= tightness) {
+        matrix.set(a, b, status = true)
+      }
+      val scope = Array(variables(2 * i), variables(2 * i + 1))
+      val c = algorithm match {
+        case "BinaryExtR" => new BinaryExtR(scope, matrix)
+        case "BinaryExtNR" => new BinaryExtNR(scope, matrix)
+        case "BinaryExtBit" => new BinaryExtBit(scope, matrix)
+      }
+      c.register(new AdviseCount())
+      problem.addConstraint(c)
+      c
+    }
+
+    val init = problem.initState.toState
+
+    states = Array.fill(NB_STATES) {
+      variables.foldLeft(init) { (ps, v) =>
+        val d = ps.dom(v).filter(_ => rand.nextDouble() < density)
+        if (d.isEmpty) ps else ps.updateDomNonEmpty(v, d)
+      }
+    }
+  }
+
+  @Benchmark
+  def revise(): Outcome = {
+    cursor += 1
+    val c = constraints(cursor % NB_CONSTRAINTS)
+    val state = states((cursor / NB_CONSTRAINTS) % NB_STATES)
+    c.revise(state, modified)
+  }
+
+}
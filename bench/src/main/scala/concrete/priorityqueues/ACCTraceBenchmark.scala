@@ -0,0 +1,52 @@
+package concrete.priorityqueues
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+
+/**
+  * Replays operation sequences recorded from ACC.reduce when solving real instances.
+  * The score is given in replayed traces per time unit: divide by the trace size
+  * (logged during setup) to obtain queue ops/s.
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.Throughput, Mode.SampleTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class ACCTraceBenchmark {
+
+  @Param(Array("BinaryHeap", "DAryHeap", "BinomialHeap", "FibonacciHeap", "BitVectorPriorityQueue", "TournamentPriorityQueue",
+    "QuickFifos", "RadixHeap", "MultiQueue", "AdaptiveQueue",
+    "JavaNative", "ScalaNative", "ScalaBinomialHeap"))
+  var queueName: String = _
+
+  @Param(Array(
+    "/concrete/it/Crossword-lex-vg-4-6.xml.xz",
+    "/concrete/it/CostasArray-10.xml.xz",
+    "/concrete/it/testMainCOP/Rcpsp-j30-01-01_c18.xml.lzma"))
+  var instance: String = _
+
+  @Param(Array("1000000"))
+  var maxOps: Int = _
+
+  private var trace: QueueTrace = _
+  private var queue: PriorityQueue[BenchElement] = _
+  private var elements: Array[BenchElement] = _
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    trace = QueueTrace.record(instance, maxOps)
+    println(s"\n$instance: ${trace.size} queue operations on ${trace.nbElements} constraints")
+    queue = BenchElement.queue(queueName)
+    elements = BenchElement.elements(trace.nbElements)
+  }
+
+  @Benchmark
+  def replay(): Int = {
+    queue.clear()
+    trace.replay(queue, elements)
+  }
+
+}
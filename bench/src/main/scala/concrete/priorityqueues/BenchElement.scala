@@ -0,0 +1,24 @@
+package concrete.priorityqueues
+
+import concrete.ParameterManager
+
+/**
+  * Queued element satisfying the requirements of every PriorityQueue
+  * implementation (id-indexed heaps, presence-tagged queues and linked fifos).
+  */
+final class BenchElement(val id: Int) extends Identified with PTag with DLNode[BenchElement] {
+  override def toString: String = s"e$id"
+}
+
+object BenchElement {
+  def elements(n: Int): Array[BenchElement] = Array.tabulate(n)(new BenchElement(_))
+
+  /**
+    * Instantiates a queue the same way ACC does with the ac3c.queue parameter.
+    */
+  def queue(name: String): PriorityQueue[BenchElement] =
+    ParameterManager.classInPackage(name, "concrete.priorityqueues")
+      .getConstructor()
+      .newInstance()
+      .asInstanceOf[PriorityQueue[BenchElement]]
+}
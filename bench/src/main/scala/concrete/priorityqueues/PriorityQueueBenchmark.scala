@@ -0,0 +1,115 @@
+package concrete.priorityqueues
+
+import java.util.concurrent.TimeUnit
+
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+import scala.util.Random
+
+/**
+  * Synthetic offer/poll/clear mixes. Throughput mode gives ops/s, sample mode gives
+  * latency percentiles (p99) and allocation rate is obtained with "-prof gc".
+  *
+  * SimpleFifos is not benchmarked as it requires keys to be list indices.
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Array(Mode.Throughput, Mode.SampleTime))
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+class PriorityQueueBenchmark {
+
+  @Param(Array("BinaryHeap", "DAryHeap", "BinomialHeap", "FibonacciHeap", "BitVectorPriorityQueue", "TournamentPriorityQueue",
+    "QuickFifos", "RadixHeap", "MultiQueue", "AdaptiveQueue",
+    "JavaNative", "ScalaNative", "ScalaBinomialHeap"))
+  var queueName: String = _
+
+  /**
+    * Number of distinct elements (i.e., constraints)
+    */
+  @Param(Array("16", "1000", "50000"))
+  var size: Int = _
+
+  /**
+    * Keys are drawn in [0, maxKey)
+    */
+  @Param(Array("1000000"))
+  var maxKey: Int = _
+
+  private val NB_RANDOM = 1 << 16
+
+  private var queue: PriorityQueue[BenchElement] = _
+  private var elements: Array[BenchElement] = _
+  private var ids: Array[Int] = _
+  private var keys: Array[Int] = _
+  private var cursor = 0
+
+  @Setup(Level.Trial)
+  def setup(): Unit = {
+    val rand = new Random(0)
+    queue = BenchElement.queue(queueName)
+    elements = BenchElement.elements(size)
+    ids = Array.fill(NB_RANDOM)(rand.nextInt(size))
+    keys = Array.fill(NB_RANDOM)(rand.nextInt(maxKey))
+  }
+
+  /**
+    * Steady state: the queue holds all elements, each operation polls the
+    * best one and enqueues it again with a new key.
+    */
+  @Benchmark
+  def hold(): BenchElement = {
+    if (queue.isEmpty) fill()
+    val e = queue.poll()
+    queue.offer(e, nextKey())
+    e
+  }
+
+  /**
+    * Offers size random elements (duplicates are key updates), then polls
+    * until the queue is empty.
+    */
+  @Benchmark
+  def fillAndDrain(bh: Blackhole): Unit = {
+    queue.clear()
+    var i = size
+    while (i > 0) {
+      val c = next()
+      bh.consume(queue.offer(elements(ids(c)), keys(c)))
+      i -= 1
+    }
+    while (!queue.isEmpty) {
+      bh.consume(queue.poll())
+    }
+  }
+
+  /**
+    * Offers size random elements and polls only a few of them before clearing the
+    * queue, as ACC does when a contradiction is found.
+    */
+  @Benchmark
+  def fillAndClear(bh: Blackhole): Unit = {
+    var i = size
+    while (i > 0) {
+      val c = next()
+      bh.consume(queue.offer(elements(ids(c)), keys(c)))
+      if ((i & 7) == 0) bh.consume(queue.poll())
+      i -= 1
+    }
+    queue.clear()
+  }
+
+  private def fill(): Unit = {
+    for (e <- elements) queue.offer(e, nextKey())
+  }
+
+  private def nextKey(): Int = keys(next())
+
+  private def next(): Int = {
+    cursor = (cursor + 1) & (NB_RANDOM - 1)
+    cursor
+  }
+
+}
@@ -0,0 +1,114 @@
+package concrete.priorityqueues
+
+import concrete.constraint.Constraint
+import concrete.runner.XCSP3Concrete
+import concrete.{ParameterManager, Solver}
+
+import scala.util.Try
+
+/**
+  * Sequence of queue operations recorded from ACC.reduce. Positive values in ops
+  * are offers of the given constraint id with the corresponding key in evals.
+  */
+final class QueueTrace(val ops: Array[Int], val evals: Array[Int]) {
+  val nbElements: Int = ops.foldLeft(0)(math.max) + 1
+
+  def size: Int = ops.length
+
+  def replay(queue: PriorityQueue[BenchElement], elements: Array[BenchElement]): Int = {
+    var polled = 0
+    var i = 0
+    while (i < ops.length) {
+      ops(i) match {
+        case QueueTrace.POLL =>
+          // Orderings differ between queues: a poll recorded on a non-empty queue may
+          // find this one empty
+          if (!queue.isEmpty) {
+            queue.poll()
+            polled += 1
+          }
+        case QueueTrace.CLEAR => queue.clear()
+        case id => queue.offer(elements(id), evals(i))
+      }
+      i += 1
+    }
+    polled
+  }
+}
+
+object QueueTrace {
+  val POLL: Int = -1
+  val CLEAR: Int = -2
+
+  /**
+    * Solves the given instance until a solution is found or maxOps queue
+    * operations have been recorded.
+    */
+  def record(resource: String, maxOps: Int): QueueTrace = {
+    val url = getClass.getResource(resource)
+    require(url != null, s"Could not find resource $resource")
+
+    val recorder = new Recorder(maxOps)
+    TracingQueue.recorder = recorder
+    try {
+      val pm = new ParameterManager().updated("ac3c.queue", classOf[TracingQueue])
+      for (cspom <- XCSP3Concrete.loadCSPOMURL(url); solver <- Solver(cspom, pm)) {
+        // Search is interrupted when the trace is full
+        Try(solver.hasNext)
+      }
+    } finally {
+      TracingQueue.recorder = null
+      Thread.interrupted()
+    }
+    recorder.result()
+  }
+
+  final class Recorder(maxOps: Int) {
+    private val ops = new Array[Int](maxOps)
+    private val evals = new Array[Int](maxOps)
+    private var size = 0
+
+    def full: Boolean = size >= maxOps
+
+    def record(op: Int, eval: Int): Unit = {
+      if (full) {
+        Thread.currentThread().interrupt()
+      } else {
+        ops(size) = op
+        evals(size) = eval
+        size += 1
+      }
+    }
+
+    def result(): QueueTrace = new QueueTrace(ops.take(size), evals.take(size))
+  }
+
+}
+
+/**
+  * QuickFifos (ACC's default queue) recording all operations to the current recorder.
+  */
+final class TracingQueue extends PriorityQueue[Constraint] {
+  private val queue = new QuickFifos[Constraint]()
+
+  def offer(e: Constraint, eval: Int): Boolean = {
+    TracingQueue.recorder.record(e.id, eval)
+    queue.offer(e, eval)
+  }
+
+  def poll(): Constraint = {
+    TracingQueue.recorder.record(QueueTrace.POLL, 0)
+    queue.poll()
+  }
+
+  def clear(): Unit = {
+    TracingQueue.recorder.record(QueueTrace.CLEAR, 0)
+    queue.clear()
+  }
+
+  def isEmpty: Boolean = queue.isEmpty
+}
+
+object TracingQueue {
+  var recorder: QueueTrace.Recorder = _
+}
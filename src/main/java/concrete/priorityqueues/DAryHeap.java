@@ -0,0 +1,195 @@
+package concrete.priorityqueues;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Array-based, auto-expandable 4-ary heap. Stores Identified objects, each
+ * uniquely identified object can be present only once in the queue.
+ *
+ * Compared to BinaryHeap, heap entries pack the key and the id of the element
+ * in a single long (key in the high-order bits), so that a sift only reads and
+ * moves primitives from a single array, and entries compare with a single long
+ * comparison (ties are broken by id). Sifts move a hole instead of swapping
+ * entries, and the 4-ary layout halves the height of the heap, with the four
+ * children of a node usually sharing a cache line.
+ *
+ * @param <T>
+ */
+public final class DAryHeap<T extends Identified> implements PriorityQueue<T> {
+
+	private static final int LOG_D = 2;
+
+	private static final int D = 1 << LOG_D;
+
+	private long[] heap;
+
+	private T[] values;
+
+	private int[] queuePosition;
+
+	private int[] inQueue;
+
+	private int size = 0;
+
+	private int iter = 0;
+
+	public DAryHeap() {
+		this(10);
+	}
+
+	@SuppressWarnings("unchecked")
+	public DAryHeap(final int initSize) {
+		this.heap = new long[initSize];
+		this.values = (T[]) new Identified[initSize];
+		this.queuePosition = new int[initSize];
+		this.inQueue = new int[initSize];
+		Arrays.fill(inQueue, -1);
+	}
+
+	private static long entry(final int key, final int id) {
+		return ((long) key << 32) | id;
+	}
+
+	private static int id(final long entry) {
+		return (int) entry;
+	}
+
+	/**
+	 * Increases the capacity of this instance, if necessary, to ensure that it
+	 * can hold at least the number of elements specified by the minimum
+	 * capacity argument.
+	 *
+	 * @param minCapacity
+	 *            the desired minimum capacity
+	 */
+	private void ensureMapCapacity(final int minCapacity) {
+		final int oldCapacity = queuePosition.length;
+		if (minCapacity > oldCapacity) {
+			final int newCapacity = Math.max(minCapacity, (oldCapacity * 3) / 2 + 1);
+			// minCapacity is usually close to size, so this is a win:
+			values = Arrays.copyOf(values, newCapacity);
+			queuePosition = Arrays.copyOf(queuePosition, newCapacity);
+			inQueue = Arrays.copyOf(inQueue, newCapacity);
+			Arrays.fill(inQueue, oldCapacity, newCapacity, -1);
+		}
+	}
+
+	private void ensureHeapCapacity(final int minCapacity) {
+		final int oldCapacity = heap.length;
+		if (minCapacity > oldCapacity) {
+			heap = Arrays.copyOf(heap, Math.max(minCapacity, (oldCapacity * 3) / 2 + 1));
+		}
+	}
+
+	@Override
+	public boolean offer(final T arg0, final int eval) {
+		final int id = arg0.id();
+		ensureMapCapacity(id + 1);
+		values[id] = arg0;
+		final long entry = entry(eval, id);
+
+		if (inQueue[id] == iter) {
+			final int position = queuePosition[id];
+			final long old = heap[position];
+			if (entry < old) {
+				siftUp(position, entry);
+			} else if (entry > old) {
+				siftDown(position, entry);
+			}
+			return false;
+		} else {
+			ensureHeapCapacity(size + 1);
+			inQueue[id] = iter;
+			siftUp(size++, entry);
+			return true;
+		}
+	}
+
+	@Override
+	public T poll() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		final int min = id(heap[0]);
+		if (--size > 0) {
+			siftDown(0, heap[size]);
+		}
+		inQueue[min] = -1;
+		return values[min];
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+		iter++;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Moves the hole at position start up to the place of the given entry.
+	 */
+	private void siftUp(final int start, final long entry) {
+		final long[] heap = this.heap;
+		int hole = start;
+		while (hole > 0) {
+			final int parent = (hole - 1) >> LOG_D;
+			final long p = heap[parent];
+			if (entry < p) {
+				heap[hole] = p;
+				queuePosition[id(p)] = hole;
+				hole = parent;
+			} else {
+				break;
+			}
+		}
+		heap[hole] = entry;
+		queuePosition[id(entry)] = hole;
+	}
+
+	/**
+	 * Moves the hole at position start down to the place of the given entry.
+	 */
+	private void siftDown(final int start, final long entry) {
+		final long[] heap = this.heap;
+		final int size = this.size;
+		int hole = start;
+		int child;
+		while ((child = (hole << LOG_D) + 1) < size) {
+			final int end = Math.min(child + D, size);
+			int best = child;
+			long bestEntry = heap[child];
+			for (int c = child + 1; c < end; c++) {
+				final long e = heap[c];
+				if (e < bestEntry) {
+					best = c;
+					bestEntry = e;
+				}
+			}
+			if (bestEntry < entry) {
+				heap[hole] = bestEntry;
+				queuePosition[id(bestEntry)] = hole;
+				hole = best;
+			} else {
+				break;
+			}
+		}
+		heap[hole] = entry;
+		queuePosition[id(entry)] = hole;
+	}
+
+	public String toString() {
+		final StringBuilder stb = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				stb.append(", ");
+			}
+			stb.append(values[id(heap[i])]).append(": ").append(heap[i] >> 32);
+		}
+		return stb.append("]").toString();
+	}
+}
@@ -0,0 +1,359 @@
+package concrete.priorityqueues;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe, relaxed priority queue in the MultiQueue style (Rihani, Sanders
+ * and Dementiev, 2015). Elements are distributed among several striped heaps,
+ * each guarded by its own lock. Offers insert into a random stripe that can
+ * be locked without waiting, and polls take the minimum of the better of two
+ * random stripes. The polled element is thus not always the global minimum,
+ * but is among the best ones with high probability.
+ *
+ * Presence is tracked in an id-indexed atomic array giving the stripe holding
+ * each element, so that concurrent offers of the same element result in a
+ * single insertion, and offers of a present element update its key in place.
+ *
+ * Id-indexed data is stored in fixed-size chunks that are never moved. Growing
+ * only copies the directory of chunks, published through a volatile reference,
+ * so that offers and polls never wait for it nor lose concurrent updates.
+ *
+ * Unlike the other queues, poll() returns null if the queue is found empty,
+ * as emptiness may change between isEmpty() and poll(). clear() is not atomic:
+ * elements offered concurrently may remain in the queue.
+ *
+ * @param <T>
+ */
+public final class MultiQueue<T extends Identified> implements PriorityQueue<T> {
+
+	private static final int DEFAULT_SIZE = 10;
+
+	private static final int LOG_D = 2;
+
+	private static final int D = 1 << LOG_D;
+
+	private static final int LOG_CHUNK = 10;
+
+	private static final int CHUNK = 1 << LOG_CHUNK;
+
+	private static final int MASK = CHUNK - 1;
+
+	private static final long EMPTY = Long.MAX_VALUE;
+
+	private final Stripe[] stripes;
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	private volatile Chunk[] chunks;
+
+	public MultiQueue() {
+		this(2 * Runtime.getRuntime().availableProcessors(), DEFAULT_SIZE);
+	}
+
+	@SuppressWarnings("unchecked")
+	public MultiQueue(final int nbStripes, final int initSize) {
+		stripes = new MultiQueue.Stripe[nbStripes];
+		for (int i = 0; i < nbStripes; i++) {
+			stripes[i] = new Stripe();
+		}
+		chunks = new Chunk[0];
+		chunk(Math.max(initSize - 1, 0));
+	}
+
+	private static long entry(final int key, final int id) {
+		return ((long) key << 32) | id;
+	}
+
+	private static int id(final long entry) {
+		return (int) entry;
+	}
+
+	/**
+	 * @return the chunk holding data of the given id, allocating it if needed
+	 */
+	private Chunk chunk(final int id) {
+		final Chunk[] chunks = this.chunks;
+		final int c = id >>> LOG_CHUNK;
+		if (c < chunks.length) {
+			return chunks[c];
+		} else {
+			return grow(c)[c];
+		}
+	}
+
+	/**
+	 * Increases the number of chunks, if necessary, to ensure that the
+	 * directory holds at least the given chunk. Existing chunks are shared by
+	 * the new directory.
+	 *
+	 * @param c
+	 *            index of the desired chunk
+	 * @return the current directory
+	 */
+	private synchronized Chunk[] grow(final int c) {
+		final Chunk[] oldChunks = chunks;
+		final int oldCapacity = oldChunks.length;
+		if (c < oldCapacity) {
+			return oldChunks;
+		}
+		final Chunk[] newChunks = Arrays.copyOf(oldChunks, Math.max(c + 1, (oldCapacity * 3) / 2 + 1));
+		for (int i = oldCapacity; i < newChunks.length; i++) {
+			newChunks[i] = new Chunk();
+		}
+		chunks = newChunks;
+		return newChunks;
+	}
+
+	@Override
+	public boolean offer(final T e, final int eval) {
+		final int id = e.id();
+		final Chunk chunk = chunk(id);
+		final int i = id & MASK;
+		chunk.values[i] = e;
+		final AtomicIntegerArray location = chunk.location;
+		final ThreadLocalRandom rand = ThreadLocalRandom.current();
+		while (true) {
+			final int s = location.get(i);
+			if (s >= 0) {
+				final Stripe stripe = stripes[s];
+				stripe.lock.lock();
+				try {
+					// Element may have been polled in the meantime
+					if (location.get(i) == s) {
+						stripe.update(id, eval);
+						return false;
+					}
+				} finally {
+					stripe.lock.unlock();
+				}
+			} else {
+				final int r = rand.nextInt(stripes.length);
+				final Stripe stripe = stripes[r];
+				if (stripe.lock.tryLock()) {
+					try {
+						if (location.compareAndSet(i, -1, r)) {
+							stripe.insert(id, eval);
+							size.incrementAndGet();
+							return true;
+						}
+					} finally {
+						stripe.lock.unlock();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return one of the best elements, or null if the queue is empty
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public T poll() {
+		final ThreadLocalRandom rand = ThreadLocalRandom.current();
+		while (size.get() > 0) {
+			final Stripe s1 = stripes[rand.nextInt(stripes.length)];
+			final Stripe s2 = stripes[rand.nextInt(stripes.length)];
+			Stripe best = s1.top <= s2.top ? s1 : s2;
+			if (best.top == EMPTY) {
+				best = nonEmpty();
+			}
+			if (best != null && best.lock.tryLock()) {
+				try {
+					if (best.size > 0) {
+						final int id = best.removeMin();
+						final Chunk chunk = chunks[id >>> LOG_CHUNK];
+						chunk.location.set(id & MASK, -1);
+						size.decrementAndGet();
+						return (T) chunk.values[id & MASK];
+					}
+				} finally {
+					best.lock.unlock();
+				}
+			}
+		}
+		return null;
+	}
+
+	private Stripe nonEmpty() {
+		for (Stripe s : stripes) {
+			if (s.top != EMPTY) {
+				return s;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void clear() {
+		for (Stripe s : stripes) {
+			s.lock.lock();
+			try {
+				size.addAndGet(-s.size);
+				s.clear();
+			} finally {
+				s.lock.unlock();
+			}
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size.get() == 0;
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	public String toString() {
+		return Arrays.toString(stripes);
+	}
+
+	/**
+	 * Id-indexed data of CHUNK consecutive ids. The position of an element is
+	 * guarded by the lock of the stripe holding it.
+	 */
+	private static final class Chunk {
+		/**
+		 * Stripe holding each element, -1 if absent.
+		 */
+		private final AtomicIntegerArray location;
+
+		/**
+		 * Position of each element in the heap of its stripe.
+		 */
+		private final int[] position = new int[CHUNK];
+
+		private final Object[] values = new Object[CHUNK];
+
+		Chunk() {
+			final int[] absent = new int[CHUNK];
+			Arrays.fill(absent, -1);
+			location = new AtomicIntegerArray(absent);
+		}
+	}
+
+	/**
+	 * 4-ary heap of packed (key, id) entries, see DAryHeap. All methods must
+	 * be called while holding the lock of the stripe. Chunks of all elements
+	 * in the heap exist, as they were allocated before insertion.
+	 */
+	private final class Stripe {
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private long[] heap = new long[DEFAULT_SIZE];
+
+		private int size = 0;
+
+		/**
+		 * Smallest entry, read without locking to choose a stripe to poll.
+		 */
+		private volatile long top = EMPTY;
+
+		void insert(final int id, final int key) {
+			if (size >= heap.length) {
+				heap = Arrays.copyOf(heap, (heap.length * 3) / 2 + 1);
+			}
+			siftUp(chunks, size++, entry(key, id));
+			top = heap[0];
+		}
+
+		void update(final int id, final int key) {
+			final Chunk[] chunks = MultiQueue.this.chunks;
+			final int p = chunks[id >>> LOG_CHUNK].position[id & MASK];
+			final long entry = entry(key, id);
+			final long old = heap[p];
+			if (entry < old) {
+				siftUp(chunks, p, entry);
+			} else if (entry > old) {
+				siftDown(chunks, p, entry);
+			}
+			top = heap[0];
+		}
+
+		int removeMin() {
+			final int min = id(heap[0]);
+			if (--size > 0) {
+				siftDown(chunks, 0, heap[size]);
+				top = heap[0];
+			} else {
+				top = EMPTY;
+			}
+			return min;
+		}
+
+		void clear() {
+			final Chunk[] chunks = MultiQueue.this.chunks;
+			for (int i = 0; i < size; i++) {
+				final int id = id(heap[i]);
+				chunks[id >>> LOG_CHUNK].location.set(id & MASK, -1);
+			}
+			size = 0;
+			top = EMPTY;
+		}
+
+		private void siftUp(final Chunk[] chunks, final int start, final long entry) {
+			int hole = start;
+			while (hole > 0) {
+				final int parent = (hole - 1) >> LOG_D;
+				final long p = heap[parent];
+				if (entry < p) {
+					heap[hole] = p;
+					setPosition(chunks, id(p), hole);
+					hole = parent;
+				} else {
+					break;
+				}
+			}
+			heap[hole] = entry;
+			setPosition(chunks, id(entry), hole);
+		}
+
+		private void siftDown(final Chunk[] chunks, final int start, final long entry) {
+			int hole = start;
+			int child;
+			while ((child = (hole << LOG_D) + 1) < size) {
+				final int end = Math.min(child + D, size);
+				int best = child;
+				long bestEntry = heap[child];
+				for (int c = child + 1; c < end; c++) {
+					if (heap[c] < bestEntry) {
+						best = c;
+						bestEntry = heap[c];
+					}
+				}
+				if (bestEntry < entry) {
+					heap[hole] = bestEntry;
+					setPosition(chunks, id(bestEntry), hole);
+					hole = best;
+				} else {
+					break;
+				}
+			}
+			heap[hole] = entry;
+			setPosition(chunks, id(entry), hole);
+		}
+
+		private void setPosition(final Chunk[] chunks, final int id, final int position) {
+			chunks[id >>> LOG_CHUNK].position[id & MASK] = position;
+		}
+
+		public String toString() {
+			final Chunk[] chunks = MultiQueue.this.chunks;
+			final StringBuilder stb = new StringBuilder("[");
+			for (int i = 0; i < size; i++) {
+				if (i > 0) {
+					stb.append(", ");
+				}
+				final int id = id(heap[i]);
+				stb.append(chunks[id >>> LOG_CHUNK].values[id & MASK]).append(": ").append(heap[i] >> 32);
+			}
+			return stb.append("]").toString();
+		}
+	}
+}
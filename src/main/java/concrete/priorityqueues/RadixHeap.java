@@ -0,0 +1,251 @@
+package concrete.priorityqueues;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import cspom.Statistic;
+
+/**
+ * Monotone radix heap for integer keys. Offers and key updates are O(1), polls
+ * are amortized O(1): each element moves to a strictly lower bucket every time
+ * it is redistributed, i.e., at most 32 times while it is queued.
+ *
+ * Elements are stored in 33 buckets: bucket 0 contains keys equal to the last
+ * polled key, bucket b > 0 contains keys whose highest bit differing from the
+ * last polled key is bit b - 1 (negative keys differ by the sign bit and go to
+ * bucket 32). Buckets are doubly-linked lists stored in id-indexed arrays, so
+ * that no allocation occurs once the arrays have grown to the number of
+ * elements.
+ *
+ * Radix heaps require keys to be monotone: keys smaller than the last polled
+ * key are considered equal to it, and are thus polled first in FIFO order.
+ * The last polled key is reset when the queue becomes empty.
+ *
+ * @param <T>
+ */
+public final class RadixHeap<T extends Identified> implements PriorityQueue<T> {
+
+	@Statistic
+	private int nbOffer = 0;
+	@Statistic
+	private int nbUpdate = 0;
+	@Statistic
+	private int nbPoll = 0;
+	@Statistic
+	private int nbClear = 0;
+	@Statistic
+	private long nbRedistribute = 0L;
+
+	private static final int NB_BUCKETS = 33;
+
+	private static final int DEFAULT_SIZE = 10;
+
+	private T[] values;
+
+	private int[] keys;
+
+	private int[] bucket;
+
+	private int[] next;
+
+	private int[] prev;
+
+	private int[] inQueue;
+
+	private final int[] heads = new int[NB_BUCKETS];
+
+	private final int[] tails = new int[NB_BUCKETS];
+
+	/**
+	 * Bit b is set iff bucket b is not empty.
+	 */
+	private long nonEmpty = 0L;
+
+	private int last = Integer.MIN_VALUE;
+
+	private int size = 0;
+
+	private int iter = 0;
+
+	public RadixHeap() {
+		this(DEFAULT_SIZE);
+	}
+
+	@SuppressWarnings("unchecked")
+	public RadixHeap(final int initSize) {
+		values = (T[]) new Identified[initSize];
+		keys = new int[initSize];
+		bucket = new int[initSize];
+		next = new int[initSize];
+		prev = new int[initSize];
+		inQueue = new int[initSize];
+		Arrays.fill(inQueue, -1);
+		Arrays.fill(heads, -1);
+		Arrays.fill(tails, -1);
+	}
+
+	/**
+	 * Increases the capacity of this instance, if necessary, to ensure that it
+	 * can hold at least the number of elements specified by the minimum
+	 * capacity argument.
+	 *
+	 * @param minCapacity
+	 *            the desired minimum capacity
+	 */
+	private void ensureCapacity(final int minCapacity) {
+		final int oldCapacity = values.length;
+		if (minCapacity > oldCapacity) {
+			final int newCapacity = Math.max(minCapacity, (oldCapacity * 3) / 2 + 1);
+			// minCapacity is usually close to size, so this is a win:
+			values = Arrays.copyOf(values, newCapacity);
+			keys = Arrays.copyOf(keys, newCapacity);
+			bucket = Arrays.copyOf(bucket, newCapacity);
+			next = Arrays.copyOf(next, newCapacity);
+			prev = Arrays.copyOf(prev, newCapacity);
+			inQueue = Arrays.copyOf(inQueue, newCapacity);
+			Arrays.fill(inQueue, oldCapacity, newCapacity, -1);
+		}
+	}
+
+	private int bucket(final int key) {
+		return 32 - Integer.numberOfLeadingZeros(key ^ last);
+	}
+
+	@Override
+	public boolean offer(final T e, final int eval) {
+		final int id = e.id();
+		ensureCapacity(id + 1);
+		values[id] = e;
+		final int key = Math.max(eval, last);
+
+		if (inQueue[id] == iter) {
+			nbUpdate++;
+			if (keys[id] != key) {
+				keys[id] = key;
+				final int b = bucket(key);
+				if (b != bucket[id]) {
+					unlink(id);
+					append(b, id);
+				}
+			}
+			return false;
+		} else {
+			nbOffer++;
+			keys[id] = key;
+			inQueue[id] = iter;
+			append(bucket(key), id);
+			size++;
+			return true;
+		}
+	}
+
+	@Override
+	public T poll() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		if (heads[0] < 0) {
+			redistribute();
+		}
+		final int id = heads[0];
+		unlink(id);
+		inQueue[id] = -1;
+		nbPoll++;
+		if (--size == 0) {
+			last = Integer.MIN_VALUE;
+		}
+		return values[id];
+	}
+
+	/**
+	 * Empties the first non-empty bucket: its minimum key becomes the last key
+	 * and all its elements move to lower buckets.
+	 */
+	private void redistribute() {
+		final int b = Long.numberOfTrailingZeros(nonEmpty);
+		assert b > 0 && b < NB_BUCKETS;
+
+		int min = Integer.MAX_VALUE;
+		for (int i = heads[b]; i >= 0; i = next[i]) {
+			min = Math.min(min, keys[i]);
+		}
+		last = min;
+
+		int i = heads[b];
+		heads[b] = -1;
+		tails[b] = -1;
+		nonEmpty &= ~(1L << b);
+		while (i >= 0) {
+			final int n = next[i];
+			append(bucket(keys[i]), i);
+			nbRedistribute++;
+			i = n;
+		}
+	}
+
+	private void append(final int b, final int id) {
+		bucket[id] = b;
+		final int tail = tails[b];
+		prev[id] = tail;
+		next[id] = -1;
+		if (tail < 0) {
+			heads[b] = id;
+			nonEmpty |= 1L << b;
+		} else {
+			next[tail] = id;
+		}
+		tails[b] = id;
+	}
+
+	private void unlink(final int id) {
+		final int b = bucket[id];
+		final int p = prev[id];
+		final int n = next[id];
+		if (p < 0) {
+			heads[b] = n;
+		} else {
+			next[p] = n;
+		}
+		if (n < 0) {
+			tails[b] = p;
+		} else {
+			prev[n] = p;
+		}
+		if (heads[b] < 0) {
+			nonEmpty &= ~(1L << b);
+		}
+	}
+
+	@Override
+	public void clear() {
+		for (long m = nonEmpty; m != 0L; m &= m - 1) {
+			final int b = Long.numberOfTrailingZeros(m);
+			heads[b] = -1;
+			tails[b] = -1;
+		}
+		nonEmpty = 0L;
+		size = 0;
+		last = Integer.MIN_VALUE;
+		iter++;
+		nbClear++;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public String toString() {
+		final StringBuilder stb = new StringBuilder();
+		for (int b = 0; b < NB_BUCKETS; b++) {
+			if (heads[b] >= 0) {
+				stb.append(b).append(':');
+				for (int i = heads[b]; i >= 0; i = next[i]) {
+					stb.append(' ').append(values[i]).append(" (").append(keys[i]).append(')');
+				}
+				stb.append('\n');
+			}
+		}
+		return stb.toString();
+	}
+}
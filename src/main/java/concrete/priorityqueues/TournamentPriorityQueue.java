@@ -0,0 +1,186 @@
+package concrete.priorityqueues;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Id-indexed priority queue, similar to BitVectorPriorityQueue, but keeping a
+ * tournament tree over the evaluations so that the minimum is maintained in
+ * O(log n) by offer() and poll() instead of being searched by a linear scan.
+ *
+ * Internal nodes of the tree store the id of the best present element of their
+ * subtree. Leaves are implicit: leaf (capacity + id) holds id iff the element is
+ * present. Presence uses the same generation counter as BinaryHeap, so that
+ * clear() is O(1): nodes referring to absent elements are considered empty.
+ *
+ * @param <T>
+ */
+public final class TournamentPriorityQueue<T extends Identified> implements
+        PriorityQueue<T> {
+
+    private T[] values;
+
+    private int[] evals;
+
+    private int[] inQueue;
+
+    /**
+     * tree[1] is the root, children of node i are 2i and 2i + 1.
+     */
+    private int[] tree;
+
+    /**
+     * Number of leaves, always a power of 2.
+     */
+    private int capacity;
+
+    private int size = 0;
+
+    private int iter = 0;
+
+    public TournamentPriorityQueue() {
+        this(16);
+    }
+
+    @SuppressWarnings("unchecked")
+    public TournamentPriorityQueue(final int initSize) {
+        capacity = 2;
+        while (capacity < initSize) {
+            capacity <<= 1;
+        }
+        values = (T[]) new Identified[capacity];
+        evals = new int[capacity];
+        inQueue = new int[capacity];
+        Arrays.fill(inQueue, -1);
+        tree = new int[capacity];
+        Arrays.fill(tree, -1);
+    }
+
+    /**
+     * Increases the capacity of this instance, if necessary, to ensure that it
+     * can hold at least the number of elements specified by the minimum
+     * capacity argument. The current tree becomes the leftmost subtree of the
+     * new one.
+     *
+     * @param minCapacity
+     *            the desired minimum capacity
+     */
+    private void ensureCapacity(final int minCapacity) {
+        if (minCapacity > capacity) {
+            int newCapacity = capacity;
+            int shift = 0;
+            while (newCapacity < minCapacity) {
+                newCapacity <<= 1;
+                shift++;
+            }
+            values = Arrays.copyOf(values, newCapacity);
+            evals = Arrays.copyOf(evals, newCapacity);
+            inQueue = Arrays.copyOf(inQueue, newCapacity);
+            Arrays.fill(inQueue, capacity, newCapacity, -1);
+
+            final int[] newTree = new int[newCapacity];
+            Arrays.fill(newTree, -1);
+            for (int level = 1; level < capacity; level <<= 1) {
+                System.arraycopy(tree, level, newTree, level << shift, level);
+            }
+            for (int node = (1 << shift) >> 1; node > 0; node >>= 1) {
+                newTree[node] = newTree[node << 1];
+            }
+            tree = newTree;
+            capacity = newCapacity;
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean offer(final T e, final int eval) {
+        final int id = e.id();
+        ensureCapacity(id + 1);
+        values[id] = e;
+        if (inQueue[id] == iter) {
+            if (evals[id] != eval) {
+                evals[id] = eval;
+                update(id);
+            }
+            return false;
+        } else {
+            evals[id] = eval;
+            inQueue[id] = iter;
+            size++;
+            update(id);
+            return true;
+        }
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        iter++;
+    }
+
+    @Override
+    public T poll() {
+        final int min = winner(1);
+        if (min < 0) {
+            throw new NoSuchElementException();
+        }
+        inQueue[min] = -1;
+        size--;
+        update(min);
+        return values[min];
+    }
+
+    /**
+     * @return id of the best present element in the subtree rooted at node,
+     *         or -1 if there is none
+     */
+    private int winner(final int node) {
+        final int w = node >= capacity ? node - capacity : tree[node];
+        if (w >= 0 && inQueue[w] == iter) {
+            return w;
+        } else {
+            return -1;
+        }
+    }
+
+    private int best(final int w1, final int w2) {
+        if (w1 < 0) {
+            return w2;
+        } else if (w2 < 0 || evals[w1] <= evals[w2]) {
+            return w1;
+        } else {
+            return w2;
+        }
+    }
+
+    /**
+     * Replays the tournament from the leaf of the given id up to the root.
+     * Stops as soon as a node keeps a winner that is unrelated to the update.
+     */
+    private void update(final int id) {
+        for (int node = (capacity + id) >> 1; node > 0; node >>= 1) {
+            final int w = best(winner(node << 1), winner((node << 1) + 1));
+            if (w == tree[node] && w != id) {
+                return;
+            }
+            tree[node] = w;
+        }
+    }
+
+    public String toString() {
+        final StringBuilder stb = new StringBuilder("[");
+        for (int i = 0; i < capacity; i++) {
+            if (inQueue[i] == iter) {
+                if (stb.length() > 1) {
+                    stb.append(", ");
+                }
+                stb.append(values[i]).append(": ").append(evals[i]);
+            }
+        }
+        return stb.append("]").toString();
+    }
+}
@@ -101,6 +101,9 @@ final class BitVectorDomain(val offset: Int, val bitVector: BitVector, override
     case id: IntervalDomain => this & id.span
     case s: Singleton => if (contains(s.singleValue)) s else EmptyIntDomain
     case bd: BitVectorDomain => intersectBVD(bd)
+    case sb: SmallBitDomain =>
+      val inter = sb & this
+      if (inter.size == size) this else inter
     case EmptyIntDomain => EmptyIntDomain
     case b: BooleanDomain => b & this
     case _ => filter(d)
@@ -158,6 +161,13 @@ final class BitVectorDomain(val offset: Int, val bitVector: BitVector, override
         val union = toBitVector(newOffset) | bv.toBitVector(newOffset)
         IntDomain.ofBitVector(newOffset, union, union.cardinality)
 
+      case sb: SmallBitDomain =>
+        val newOffset = math.min(offset, sb.offset)
+        val union = toBitVector(newOffset) | sb.toBitVector(newOffset)
+        IntDomain.ofBitVector(newOffset, union, union.cardinality)
+
+      case il: IntervalListDomain => il | this
+
       case EmptyIntDomain | BooleanDomain.EMPTY => this
 
       case b: BooleanDomain => this | b.span
@@ -208,6 +218,8 @@ final class BitVectorDomain(val offset: Int, val bitVector: BitVector, override
       case d: BooleanDomain => head >= d.head && last <= d.last
       case id: IntervalDomain => (this & id.span).size == size
       case bd: BitVectorDomain => this.intersectBVD(bd).size == size
+      case sb: SmallBitDomain => head >= sb.head && last <= sb.last && forall(sb)
+      case il: IntervalListDomain => head >= il.head && last <= il.last && forall(il)
       case t: TreeSetDomain => last <= t.last && forall(t)
     }
   }
@@ -0,0 +1,261 @@
+package concrete
+
+import java.util
+
+import com.typesafe.scalalogging.LazyLogging
+import concrete.constraint.Constraint
+import cspom.Statistic
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+  * Records domain reductions with their explanations, and derives first-UIP
+  * nogoods from conflicts.
+  *
+  * Each reduction is an entry of a trail: some variable was reduced to some
+  * domain at some decision level. Entries made by a constraint are
+  * explained by the entries of the variables given by
+  * Constraint.explanation when the revision was done: the reduction holds
+  * whenever these variables belong to their domains. Entries made by
+  * decisions have no explanation.
+  *
+  * Learnt nogoods are conjunctions of "variable in domain" literals that
+  * cannot hold together.
+  */
+final class Explainer(problem: Problem) extends LazyLogging {
+
+  @Statistic
+  var nbLearnt = 0
+
+  /**
+    * Conflicts after which a chronological backtrack was done
+    */
+  @Statistic
+  var nbChronological = 0
+
+  private var size = 0
+  private var variables = new Array[Int](1024)
+  private var domains = new Array[Domain](1024)
+  private var levels = new Array[Int](1024)
+  /**
+    * Previous entry of the same variable, -1 for the domain at the root
+    */
+  private var previous = new Array[Int](1024)
+  /**
+    * Entries explaining each entry, null for decisions
+    */
+  private var antecedents = new Array[Array[Int]](1024)
+
+  private val last = Array.fill(problem.variables.length)(-1)
+
+  private val rootSizes = new Array[Int](problem.variables.length)
+
+  /**
+    * First entry of each level
+    */
+  private val levelStart = ArrayBuffer(0)
+
+  private var level = 0
+
+  /**
+    * Level of the deepest right decision. Backjumping below it would lose
+    * the refutation of the corresponding left decision, hence duplicate
+    * solutions when enumerating.
+    */
+  private var floor = 0
+
+  /**
+    * Entries explaining the last contradiction
+    */
+  private var conflict: Array[Int] = _
+
+  /**
+    * Becomes false when domains were reduced without being recorded.
+    * Explanations are then unsafe until next reset.
+    */
+  private var valid = true
+
+  /**
+    * Starts a new search from the given root state
+    */
+  def reset(root: ProblemState): Unit = {
+    size = 0
+    util.Arrays.fill(last, -1)
+    for (v <- problem.variables) rootSizes(v.id) = root.dom(v).size
+    levelStart.clear()
+    levelStart += 0
+    level = 0
+    floor = 0
+    conflict = null
+    valid = true
+  }
+
+  /**
+    * Opens a new decision level
+    */
+  def push(newLevel: Int): Unit = {
+    backtrack(newLevel - 1)
+    levelStart += size
+    level = newLevel
+  }
+
+  /**
+    * Removes entries made after the given level
+    */
+  def backtrack(toLevel: Int): Unit = {
+    if (toLevel < level) {
+      val end = levelStart(toLevel + 1)
+      while (size > end) {
+        size -= 1
+        last(variables(size)) = previous(size)
+        domains(size) = null
+        antecedents(size) = null
+      }
+      levelStart.dropRightInPlace(levelStart.size - toLevel - 1)
+      level = toLevel
+      floor = math.min(floor, toLevel)
+    }
+    conflict = null
+  }
+
+  /**
+    * Records the reduction of a variable by a decision at current level
+    */
+  def decided(variable: Variable, dom: Domain): Unit = record(variable.id, dom, null)
+
+  /**
+    * Notifies that a right decision is applied at current level
+    */
+  def refuted(): Unit = floor = level
+
+  /**
+    * Records the reductions made by a revision of the given constraint
+    */
+  def revised(constraint: Constraint, before: ProblemState, after: ProblemState): Unit = {
+    val explained = after.recentUpdates.toSeq.map { case (i, dom) =>
+      (i, dom, explain(constraint.explanation(Some(problem.variables(i))), before))
+    }
+    for ((i, dom, ants) <- explained) record(i, dom, ants)
+  }
+
+  /**
+    * Records the explanation of a contradiction detected by the given
+    * constraint
+    */
+  def failed(constraint: Constraint, before: ProblemState): Unit = {
+    conflict = explain(constraint.explanation(None), before)
+  }
+
+  private def explain(explanation: Iterable[Variable], before: ProblemState): Array[Int] = {
+    val ants = explanation.iterator.map { v =>
+      val e = last(v.id)
+      val recorded = if (e < 0) rootSizes(v.id) else domains(e).size
+      if (before.dom(v).size != recorded) {
+        if (valid) logger.warn(s"Reduction of $v was not recorded, explanations are disabled until next restart")
+        valid = false
+      }
+      e
+    }
+    ants.filter(_ >= 0).toArray
+  }
+
+  private def record(variable: Int, dom: Domain, ants: Array[Int]): Unit = {
+    if (size == variables.length) {
+      val n = size * 2
+      variables = util.Arrays.copyOf(variables, n)
+      domains = util.Arrays.copyOf(domains, n)
+      levels = util.Arrays.copyOf(levels, n)
+      previous = util.Arrays.copyOf(previous, n)
+      antecedents = util.Arrays.copyOf(antecedents, n)
+    }
+    variables(size) = variable
+    domains(size) = dom
+    levels(size) = level
+    previous(size) = last(variable)
+    antecedents(size) = ants
+    last(variable) = size
+    size += 1
+  }
+
+  /**
+    * Derives a first-UIP nogood from the last contradiction. The conflict
+    * explanation is resolved with the explanations of the most recent
+    * entries of current level, until a single entry of current level
+    * remains.
+    *
+    * @return the literals of the nogood, UIP first, and the level to
+    *         backjump to, where the nogood propagates. None if the last
+    *         contradiction could not be explained or if the nogood does not
+    *         allow to backjump, in which case a chronological backtrack
+    *         must be done.
+    */
+  def analyze(): Option[(Seq[(Variable, Domain)], Int)] = {
+    val c = conflict
+    conflict = null
+    if (c == null || !valid || level == 0) {
+      nbChronological += 1
+      None
+    } else {
+      val seen = new util.BitSet(size)
+      val lower = new ArrayBuffer[Int]()
+      var counter = 0
+
+      def mark(e: Int): Unit = {
+        if (!seen.get(e)) {
+          seen.set(e)
+          if (levels(e) == level) counter += 1 else lower += e
+        }
+      }
+
+      c.foreach(mark)
+
+      // Antecedents of an entry are always older than the entry, so
+      // remaining entries of current level are found by scanning the trail
+      // backwards
+      var i = size - 1
+      var uip = -1
+      while (uip < 0 && counter > 0) {
+        while (!seen.get(i)) i -= 1
+        val ants = antecedents(i)
+        if (counter == 1) {
+          uip = i
+        } else if (ants == null) {
+          // Several decisions at current level
+          counter = 0
+        } else {
+          counter -= 1
+          ants.foreach(mark)
+          i -= 1
+        }
+      }
+
+      if (uip < 0) {
+        nbChronological += 1
+        None
+      } else {
+        // Most recent entries imply older ones of the same variable
+        val kept = new util.BitSet(problem.variables.length)
+        kept.set(variables(uip))
+        val literals = (uip +: lower.sorted(Ordering.Int.reverse))
+          .filter { e =>
+            val v = variables(e)
+            (e == uip) || !kept.get(v) && {
+              kept.set(v)
+              true
+            }
+          }
+
+        val backjump = math.max(floor, literals.tail.map(levels).maxOption.getOrElse(0))
+        if (backjump >= level) {
+          nbChronological += 1
+          None
+        } else {
+          nbLearnt += 1
+          Some((literals.map(e => (problem.variables(variables(e)), domains(e))), backjump))
+        }
+      }
+    }
+  }
+
+  override def toString: String = s"$size entries at level $level"
+}
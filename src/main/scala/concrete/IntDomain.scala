@@ -28,7 +28,19 @@ object IntDomain {
       val asSet = new ContiguousIntRangeSet(d)
       val size = asSet.totalSize
       val hullSize = hull.itvSize.finite
-      if ((asSet.totalSize * Finite(TREE_SET_THRESHOLD)) < hullSize) {
+      val intervals = d.contents.toSeq.collect { case FiniteIntInterval(l, u) => (Math.toIntExact(l), Math.toIntExact(u)) }
+      if (hullSize <= SmallBitDomain.MAX_SPAN) {
+        val offset = Math.toIntExact(hull.lb.finite)
+        var mask = 0L
+        for (FiniteIntInterval(l, u) <- d.contents) {
+          mask |= SmallBitDomain.range(Math.toIntExact(l - offset), Math.toIntExact(u - offset))
+        }
+        new SmallBitDomain(offset, mask)
+      } else if (intervals.size * IntervalListDomain.INTERVAL_THRESHOLD < hullSize) {
+        val builder = new IntervalListDomain.Builder(intervals.size)
+        for ((l, u) <- intervals.sortBy(_._1)) builder.add(l, u)
+        builder.result()
+      } else if ((asSet.totalSize * Finite(TREE_SET_THRESHOLD)) < hullSize) {
         val builder = TreeSet.newBuilder[Int]
         builder ++= asSet.iterator.map(Math.toIntExact)
         new TreeSetDomain(builder.result())
@@ -62,6 +74,8 @@ object IntDomain {
       assert(s == bv.cardinality)
       if (ub - lb == s - 1) {
         new IntervalDomain(offset + lb, offset + ub)
+      } else if (ub - lb < SmallBitDomain.MAX_SPAN) {
+        new SmallBitDomain(offset + lb, word(bv, lb))
       } else if (lb >= BitVector.WORD_SIZE) {
         new BitVectorDomain(offset + lb, bv.shift(-lb), s)
       } else {
@@ -70,6 +84,77 @@ object IntDomain {
 
   }
 
+  /**
+    * 64 bits of the bit vector, starting from given bit
+    */
+  private def word(bv: BitVector, from: Int): Long = {
+    val words = bv.words
+    val w = from >> 6
+    val s = from & 63
+    val low = words(w) >>> s
+    if (s == 0 || w + 1 >= words.length) low else low | (words(w + 1) << (64 - s))
+  }
+
+  /**
+    * Builds a domain from a word: value offset + i is present iff bit i of
+    * mask is set.
+    */
+  def ofMask(offset: Int, mask: Long): IntDomain = {
+    if (mask == 0L) {
+      EmptyIntDomain
+    } else {
+      val lb = java.lang.Long.numberOfTrailingZeros(mask)
+      val m = mask >>> lb
+      val ub = 63 - java.lang.Long.numberOfLeadingZeros(m)
+      val s = java.lang.Long.bitCount(m)
+      if (s == 1) {
+        Singleton(offset + lb)
+      } else if (ub == s - 1) {
+        new IntervalDomain(offset + lb, offset + lb + ub)
+      } else {
+        new SmallBitDomain(offset + lb, m)
+      }
+    }
+  }
+
+  /**
+    * Builds a domain from the bounds of sorted, disjoint and non-adjacent
+    * intervals. Domains with few intervals over a large span are represented
+    * as interval lists.
+    */
+  def ofIntervals(bounds: Array[Int]): IntDomain = bounds.length match {
+    case 0 => EmptyIntDomain
+    case 2 => ofInterval(bounds(0), bounds(1))
+    case l =>
+      val lb = bounds(0)
+      val span = bounds(l - 1).toLong - lb + 1
+      var size = 0
+      var k = 0
+      while (k < l) {
+        size += bounds(k + 1) - bounds(k) + 1
+        k += 2
+      }
+      if (span <= SmallBitDomain.MAX_SPAN) {
+        var mask = 0L
+        k = 0
+        while (k < l) {
+          mask |= SmallBitDomain.range(bounds(k) - lb, bounds(k + 1) - lb)
+          k += 2
+        }
+        new SmallBitDomain(lb, mask)
+      } else if (l / 2 * IntervalListDomain.INTERVAL_THRESHOLD < span) {
+        new IntervalListDomain(bounds, size)
+      } else {
+        var bv = BitVector.empty
+        k = 0
+        while (k < l) {
+          bv = bv.set(bounds(k) - lb, bounds(k + 1) - lb + 1)
+          k += 2
+        }
+        new BitVectorDomain(lb, bv, size)
+      }
+  }
+
   def ofInterval(lb: Int, ub: Int): IntDomain =
     if (lb > ub) {
       EmptyIntDomain
@@ -97,6 +182,10 @@ object IntDomain {
         val span = ub - lb + 1
         if (span == s) {
           new IntervalDomain(lb, ub)
+        } else if (span <= SmallBitDomain.MAX_SPAN) {
+          var mask = 0L
+          for (i <- set) mask |= 1L << (i - lb)
+          new SmallBitDomain(lb, mask)
         } else if (s * TREE_SET_THRESHOLD < span) {
           new TreeSetDomain(set)
         } else {
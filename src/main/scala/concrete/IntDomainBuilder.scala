@@ -26,5 +26,16 @@ class IntDomainBuilder(offset: Int, nbits: Int = BitVector.WORD_SIZE) extends mu
     * @return The built domain
     */
   def result(cardinality: Int): IntDomain =
-    IntDomain.ofBitVector(offset, BitVector(bitSet), cardinality)
+    if (bitSet.length <= SmallBitDomain.MAX_SPAN) {
+      var mask = 0L
+      var i = bitSet.nextSetBit(0)
+      while (i >= 0) {
+        mask |= 1L << i
+        i = bitSet.nextSetBit(i + 1)
+      }
+      assert(java.lang.Long.bitCount(mask) == cardinality)
+      IntDomain.ofMask(offset, mask)
+    } else {
+      IntDomain.ofBitVector(offset, BitVector(bitSet), cardinality)
+    }
 }
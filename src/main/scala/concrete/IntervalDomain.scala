@@ -38,7 +38,11 @@ final class IntervalDomain(val span: Interval) extends IntDomain with LazyLoggin
     } else if (index == span.ub) {
       IntDomain.ofInterval(span.lb, span.ub - 1)
     } else if (contains(index)) {
-      toBVDomain excl index
+      if (size <= SmallBitDomain.MAX_SPAN) {
+        IntDomain.ofMask(head, SmallBitDomain.range(0, size - 1) & ~(1L << (index - head)))
+      } else {
+        IntDomain.ofIntervals(Array(head, index - 1, index + 1, last))
+      }
     } else {
       this
     }
@@ -76,11 +80,17 @@ final class IntervalDomain(val span: Interval) extends IntDomain with LazyLoggin
     }
 
   override def filter(f: Int => Boolean): Domain = {
-    val filt = toBVDomain.filter(f)
-    if (filt eq toBVDomain) {
-      this
+    if (size <= SmallBitDomain.MAX_SPAN) {
+      val full = SmallBitDomain.range(0, size - 1)
+      val filt = SmallBitDomain.filter(head, full, f)
+      if (filt == full) this else IntDomain.ofMask(head, filt)
     } else {
-      filt
+      val filt = toBVDomain.filter(f)
+      if (filt eq toBVDomain) {
+        this
+      } else {
+        filt
+      }
     }
   }
 
@@ -92,7 +102,8 @@ final class IntervalDomain(val span: Interval) extends IntDomain with LazyLoggin
   override def toString: String = s"[$head, $last]"
 
   def subsetOf(d: IntDomain): Boolean = d match {
-    case d: BitVectorDomain => (head to last).forall(d)
+    case d@(_: BitVectorDomain | _: SmallBitDomain) => (head to last).forall(d)
+    case d: IntervalListDomain => (d & span).size == size
     case d: IntervalDomain => head >= d.head && last <= d.last
   }
 
@@ -170,10 +181,10 @@ final class IntervalDomain(val span: Interval) extends IntDomain with LazyLoggin
       this
     } else if (i1 connected i2) {
       new IntervalDomain(i1 span i2)
+    } else if (i1.lb < i2.lb) {
+      IntDomain.ofIntervals(Array(i1.lb, i1.ub, i2.lb, i2.ub))
     } else {
-      val offset = math.min(i1.lb, i2.lb)
-      val union = toBitVector(offset).set(i1.lb - offset, i1.ub - offset + 1)
-      IntDomain.ofBitVector(offset, union, union.cardinality)
+      IntDomain.ofIntervals(Array(i2.lb, i2.ub, i1.lb, i1.ub))
     }
   }
 
@@ -185,10 +196,10 @@ final class IntervalDomain(val span: Interval) extends IntDomain with LazyLoggin
         IntDomain.ofInterval(value, last)
       } else if (value == last + 1) {
         IntDomain.ofInterval(head, value)
+      } else if (value < head) {
+        IntDomain.ofIntervals(Array(value, value, head, last))
       } else {
-        val offset = math.min(value, head)
-        val union = toBitVector(offset) + (value - offset)
-        IntDomain.ofBitVector(offset, union, size + 1)
+        IntDomain.ofIntervals(Array(head, last, value, value))
       }
     }
   }
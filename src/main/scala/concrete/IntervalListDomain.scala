@@ -0,0 +1,391 @@
+package concrete
+
+import java.util
+
+import bitvectors.BitVector
+import com.typesafe.scalalogging.LazyLogging
+import concrete.util.{CacheOne, Interval}
+
+object IntervalListDomain {
+
+  /**
+    * Domains with more intervals than span / INTERVAL_THRESHOLD are
+    * represented using bit vectors, which are then smaller.
+    */
+  val INTERVAL_THRESHOLD = 64
+
+  /**
+    * Accumulates intervals given in increasing order of lower bounds.
+    * Overlapping or adjacent intervals are merged.
+    */
+  final class Builder(capacity: Int = 8) {
+    private var bounds = new Array[Int](2 * math.max(capacity, 1))
+    private var length = 0
+
+    def add(lb: Int, ub: Int): Unit = {
+      assert(lb <= ub)
+      if (length > 0 && lb.toLong <= bounds(length - 1).toLong + 1) {
+        assert(lb >= bounds(length - 2))
+        if (ub > bounds(length - 1)) bounds(length - 1) = ub
+      } else {
+        if (length == bounds.length) bounds = util.Arrays.copyOf(bounds, 2 * length)
+        bounds(length) = lb
+        bounds(length + 1) = ub
+        length += 2
+      }
+    }
+
+    def toBounds: Array[Int] = util.Arrays.copyOf(bounds, length)
+
+    def result(): IntDomain = IntDomain.ofIntervals(toBounds)
+  }
+
+  /**
+    * @return the maximal intervals of the given domain, as bounds
+    */
+  def intervalsOf(d: Domain): Array[Int] = d match {
+    case il: IntervalListDomain => il.bounds
+    case _ if d.isEmpty => Array()
+    case _ if d.convex => Array(d.head, d.last)
+    case _ =>
+      val builder = new Builder()
+      d.foreach(v => builder.add(v, v))
+      builder.toBounds
+  }
+
+  private[concrete] def intersect(a: Array[Int], b: Array[Int]): Builder = {
+    val builder = new Builder()
+    var i = 0
+    var j = 0
+    while (i < a.length && j < b.length) {
+      val lb = math.max(a(i), b(j))
+      val ub = math.min(a(i + 1), b(j + 1))
+      if (lb <= ub) builder.add(lb, ub)
+      if (a(i + 1) < b(j + 1)) i += 2 else j += 2
+    }
+    builder
+  }
+
+  private[concrete] def union(a: Array[Int], b: Array[Int]): Builder = {
+    val builder = new Builder((a.length + b.length) / 2)
+    var i = 0
+    var j = 0
+    while (i < a.length || j < b.length) {
+      if (j >= b.length || i < a.length && a(i) <= b(j)) {
+        builder.add(a(i), a(i + 1))
+        i += 2
+      } else {
+        builder.add(b(j), b(j + 1))
+        j += 2
+      }
+    }
+    builder
+  }
+
+}
+
+/**
+  * Domains made of a few intervals over a large span, such as scheduling
+  * horizons with some holes. bounds contains the lower and upper bounds of
+  * the intervals, which are sorted, disjoint and not adjacent. Operations
+  * take time and memory proportional to the number of intervals rather than
+  * to the span.
+  */
+final class IntervalListDomain(private[concrete] val bounds: Array[Int], override val size: Int)
+  extends IntDomain with LazyLogging {
+
+  import IntervalListDomain._
+
+  assert(bounds.length >= 4 && bounds.length % 2 == 0, "IntervalListDomains must have at least two intervals")
+  assert(size == (0 until nbIntervals).map(k => ub(k) - lb(k) + 1).sum)
+
+  override val head: Int = bounds(0)
+  override val last: Int = bounds(bounds.length - 1)
+
+  lazy val span = Interval(head, last)
+
+  private val offsetBV = new CacheOne[Int, BitVector]()
+
+  def nbIntervals: Int = bounds.length / 2
+
+  private def lb(k: Int): Int = bounds(2 * k)
+
+  private def ub(k: Int): Int = bounds(2 * k + 1)
+
+  /**
+    * @return the index of the last interval whose lower bound is at most v,
+    *         -1 if v is lower than head
+    */
+  private def floorIndex(v: Int): Int = {
+    var low = 0
+    var high = nbIntervals - 1
+    while (low <= high) {
+      val mid = (low + high) >>> 1
+      if (lb(mid) <= v) low = mid + 1 else high = mid - 1
+    }
+    high
+  }
+
+  /**
+    * @return the index of the first interval whose upper bound is at least v
+    */
+  private def ceilIndex(v: Int): Int = {
+    val k = floorIndex(v)
+    if (k >= 0 && v <= ub(k)) k else k + 1
+  }
+
+  def singleValue = throw new IllegalStateException(s"Tried to obtain single value of $this ")
+
+  def isAssigned = false
+
+  def convex = false
+
+  override def isEmpty = false
+
+  /**
+    * @param value to test
+    * @return true iff value is present
+    */
+  def contains(value: Int): Boolean = {
+    Domain.checks += 1
+    val k = floorIndex(value)
+    k >= 0 && value <= ub(k)
+  }
+
+  override def next(i: Int): Int = {
+    if (i >= last) throw new NoSuchElementException
+    val k = ceilIndex(i + 1)
+    math.max(i + 1, lb(k))
+  }
+
+  override def prev(i: Int): Int = {
+    if (i <= head) throw new NoSuchElementException
+    val k = floorIndex(i - 1)
+    math.min(i - 1, ub(k))
+  }
+
+  def excl(value: Int): IntDomain = {
+    val k = floorIndex(value)
+    if (k < 0 || value > ub(k)) {
+      this
+    } else {
+      val l = lb(k)
+      val u = ub(k)
+      if (l == u) {
+        val newBounds = new Array[Int](bounds.length - 2)
+        System.arraycopy(bounds, 0, newBounds, 0, 2 * k)
+        System.arraycopy(bounds, 2 * k + 2, newBounds, 2 * k, bounds.length - 2 * k - 2)
+        IntDomain.ofIntervals(newBounds)
+      } else if (value == l || value == u) {
+        val newBounds = bounds.clone()
+        if (value == l) newBounds(2 * k) = l + 1 else newBounds(2 * k + 1) = u - 1
+        IntDomain.ofIntervals(newBounds)
+      } else {
+        val newBounds = new Array[Int](bounds.length + 2)
+        System.arraycopy(bounds, 0, newBounds, 0, 2 * k + 1)
+        newBounds(2 * k + 1) = value - 1
+        newBounds(2 * k + 2) = value + 1
+        System.arraycopy(bounds, 2 * k + 1, newBounds, 2 * k + 3, bounds.length - 2 * k - 1)
+        IntDomain.ofIntervals(newBounds)
+      }
+    }
+  }
+
+  def &(lb: Int, ub: Int): IntDomain = {
+    if (lb <= head && ub >= last) {
+      this
+    } else if (lb > last || ub < head || lb > ub) {
+      EmptyIntDomain
+    } else {
+      val i = ceilIndex(lb)
+      val j = floorIndex(ub)
+      if (i > j) {
+        EmptyIntDomain
+      } else {
+        val newBounds = util.Arrays.copyOfRange(bounds, 2 * i, 2 * j + 2)
+        newBounds(0) = math.max(lb, newBounds(0))
+        newBounds(newBounds.length - 1) = math.min(ub, newBounds(newBounds.length - 1))
+        IntDomain.ofIntervals(newBounds)
+      }
+    }
+  }
+
+  def removeFrom(lb: Int): IntDomain = if (lb <= head) EmptyIntDomain else this & (head, lb - 1)
+
+  def removeAfter(lb: Int): IntDomain = this & (head, lb)
+
+  def removeUntil(ub: Int): IntDomain = this & (ub, last)
+
+  def removeTo(ub: Int): IntDomain = if (ub >= last) EmptyIntDomain else this & (ub + 1, last)
+
+  override def filter(f: Int => Boolean): IntDomain = {
+    val builder = new Builder(nbIntervals)
+    var removed = false
+    var k = 0
+
+    def test(v: Int): Unit = if (f(v)) builder.add(v, v) else removed = true
+
+    while (k < nbIntervals) {
+      var v = lb(k)
+      val u = ub(k)
+      while (v < u) {
+        test(v)
+        v += 1
+      }
+      test(u)
+      k += 1
+    }
+    if (removed) builder.result() else this
+  }
+
+  override def &(d: Domain): Domain = d match {
+    case id: IntervalDomain => this & (id.head, id.last)
+    case s: Singleton => if (contains(s.singleValue)) s else EmptyIntDomain
+    case EmptyIntDomain => EmptyIntDomain
+    case b: BooleanDomain => b & this
+    case _ =>
+      val inter = intersect(bounds, intervalsOf(d)).result()
+      if (inter.size == size) {
+        this
+      } else if (inter.size == d.size) {
+        d
+      } else {
+        inter
+      }
+  }
+
+  override def |(d: Domain): Domain = d match {
+    case s: Singleton => this | s.singleValue
+
+    case id: IntervalDomain => this | id.span
+
+    case EmptyIntDomain | BooleanDomain.EMPTY => this
+
+    case b: BooleanDomain => this | b.span
+
+    case _ =>
+      val u = union(bounds, intervalsOf(d)).result()
+      if (u.size == size) this else u
+  }
+
+  def |(value: Int): IntDomain = {
+    if (contains(value)) {
+      this
+    } else {
+      union(bounds, Array(value, value)).result()
+    }
+  }
+
+  def |(span: Interval): IntDomain = {
+    val u = union(bounds, Array(span.lb, span.ub)).result()
+    if (u.size == size) this else u
+  }
+
+  def disjoint(d: Domain): Boolean = d match {
+    case id: IntervalDomain =>
+      val k = ceilIndex(id.head)
+      k >= nbIntervals || lb(k) > id.last
+    case s: Singleton => !contains(s.singleValue)
+    case il: IntervalListDomain => intersect(bounds, il.bounds).result().isEmpty
+    case EmptyIntDomain => true
+    case b: BooleanDomain => b.disjoint(this)
+    case _ => head > d.last || last < d.head || !d.exists(this)
+  }
+
+  def subsetOf(d: Domain): Boolean = {
+    d match {
+      case EmptyIntDomain | BooleanDomain.EMPTY | _: Singleton => false
+      case d@(_: IntervalDomain | _: BooleanDomain) => head >= d.head && last <= d.last
+      case il: IntervalListDomain => intersect(bounds, il.bounds).result().size == size
+      case _ => head >= d.head && last <= d.last && size <= d.size && forall(d)
+    }
+  }
+
+  def toBitVector(offset: Int): BitVector = {
+    offsetBV(offset, {
+      logger.trace(s"generating BV for $this offset $offset")
+      var bv = BitVector.empty
+      for (k <- 0 until nbIntervals) {
+        bv = bv.set(lb(k) - offset, ub(k) - offset + 1)
+      }
+      bv
+    })
+  }
+
+  def shift(o: Int): IntDomain = if (o == 0) this else
+    new IntervalListDomain(bounds.map(_ + o), size)
+
+  def median: Int = {
+    var remaining = size / 2
+    var k = 0
+    while (remaining >= ub(k) - lb(k) + 1) {
+      remaining -= ub(k) - lb(k) + 1
+      k += 1
+    }
+    lb(k) + remaining
+  }
+
+  override def foreach[U](f: Int => U): Unit = {
+    var k = 0
+    while (k < nbIntervals) {
+      var v = lb(k)
+      val u = ub(k)
+      while (v < u) {
+        f(v)
+        v += 1
+      }
+      f(u)
+      k += 1
+    }
+  }
+
+  def iterator: Iterator[Int] = iteratorFrom(head)
+
+  def iteratorFrom(start: Int): Iterator[Int] = new Iterator[Int] {
+    private var k = ceilIndex(start)
+    private var current = if (k < nbIntervals) math.max(start, lb(k)) else 0
+
+    def hasNext: Boolean = k < nbIntervals
+
+    def next(): Int = {
+      if (k >= nbIntervals) throw new NoSuchElementException
+      val c = current
+      if (c == ub(k)) {
+        k += 1
+        if (k < nbIntervals) current = lb(k)
+      } else {
+        current += 1
+      }
+      c
+    }
+  }
+
+  def reverseIterator: Iterator[Int] = new Iterator[Int] {
+    private var k = nbIntervals - 1
+    private var current = last
+
+    def hasNext: Boolean = k >= 0
+
+    def next(): Int = {
+      if (k < 0) throw new NoSuchElementException
+      val c = current
+      if (c == lb(k)) {
+        k -= 1
+        if (k >= 0) current = ub(k)
+      } else {
+        current -= 1
+      }
+      c
+    }
+  }
+
+  override def toString: String = {
+    val intervals = (0 until math.min(nbIntervals, IntDomain.DISPLAYED_VALUES)).map(k => s"[${lb(k)}, ${ub(k)}]")
+    if (nbIntervals <= IntDomain.DISPLAYED_VALUES) {
+      intervals.mkString(" ∪ ")
+    } else {
+      intervals.mkString("", " ∪ ", s" ∪ [${nbIntervals - IntDomain.DISPLAYED_VALUES}...]")
+    }
+  }
+
+}
@@ -20,12 +20,13 @@
 package concrete
 
 import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicReference
 
 import com.typesafe.scalalogging.LazyLogging
 import concrete.constraint.Constraint
 import concrete.constraint.linear.{GtC, LtC}
 import concrete.constraint.semantic.NoGoods
-import concrete.filter.{ACC, Filter}
+import concrete.filter.{ACC, Filter, Profiler}
 import concrete.heuristic._
 import concrete.heuristic.restart.{Geometric, NoRestarts, RestartStrategy}
 import concrete.util.SparseSeq
@@ -55,6 +56,7 @@ final class MAC(prob: Problem, params: ParameterManager, val heuristic: Heuristi
   val measureMem: Boolean = params.getOrElse("mac.measureMem", false)
   val filter: Filter = filterClass.getConstructor(classOf[Problem], classOf[ParameterManager]).newInstance(problem, params)
   statistics.register("filter", filter)
+  filter.profiler.foreach(statistics.register("profile", _))
   filter.contradictionListeners +:= heuristic
   val rsClass: Class[_ <: RestartStrategy] = params.classInPackage("mac.restart", "concrete.heuristic.restart", classOf[Geometric])
   //  val searchMeasurer: MeasureBuilder[Unit, Double] = org.scalameter.`package`
@@ -65,7 +67,25 @@ final class MAC(prob: Problem, params: ParameterManager, val heuristic: Heuristi
 
   private val superNG = params.contains("superng")
 
-  private val nogoods = if (problem.variables.nonEmpty && (params.contains("nogoods") || superNG)) Some(new NoGoods(problem.variables)) else None
+  /**
+    * Learn nogoods at restarts, from decisions
+    */
+  private val restartNoGoods = params.contains("nogoods") || superNG
+
+  /**
+    * Learn nogoods from conflicts, with non-chronological backtracking
+    */
+  private val explain = params.contains("mac.explain")
+
+  private val nogoods = if (problem.variables.nonEmpty && (restartNoGoods || explain)) Some(new NoGoods(problem.variables)) else None
+
+  for (ng <- nogoods) {
+    ng.threshold = params.getOrElse("nogoods.max", ng.threshold)
+    ng.reduction = NoGoods.reduction(params.getOrElse("nogoods.reduction", "activity"))
+    for (mb <- params.get[Int]("nogoods.maxMemory")) {
+      ng.maxLiterals = mb * 1024L * 1024L / NoGoods.literalBytes
+    }
+  }
 
   @Statistic
   var nbAssignments = 1
@@ -76,7 +96,11 @@ final class MAC(prob: Problem, params: ParameterManager, val heuristic: Heuristi
   }
   @Statistic
   var nbRuns = 0
-  var currentStack: Stack = Stack(problem.initState)
+  /**
+    * Use trailed domains and constraint states, see TrailedStore
+    */
+  private val trailed = params.contains("state.trail")
+  var currentStack: Stack = Stack(problem.initState(trailed))
   var currentBTLeft: Option[Int] = None
 
   @Statistic
@@ -85,6 +109,14 @@ final class MAC(prob: Problem, params: ParameterManager, val heuristic: Heuristi
   var usedMem = 0L
   private var restart = true
   private var firstRun = true
+  private val sharedBound = new AtomicReference[Option[Int]](None)
+
+  /**
+    * Called by the search at each node to give away parts of the search tree
+    */
+  var workSharing: Option[Stack => Stack] = None
+
+  override def profiler: Option[Profiler] = filter.profiler
 
   override def addConstraint[A <: Constraint](c: A): A = {
     super.addConstraint(filter.addConstraint(c))
@@ -93,11 +125,18 @@ final class MAC(prob: Problem, params: ParameterManager, val heuristic: Heuristi
   nogoods.foreach(addConstraint)
   nogoods.foreach(statistics.register("nogoods", _))
 
+  private[concrete] val explainer = nogoods.filter(_ => explain).map(_ => new Explainer(problem))
+  filter.explainer = explainer
+  explainer.foreach(statistics.register("explainer", _))
+
   def learnNoGoods(history: List[Seq[Decision]], stack: List[Outcome]): Unit = {
 
 
     for (ngCons <- nogoods) {
       ngCons.clearInactive()
+    }
+
+    for (ngCons <- nogoods if restartNoGoods) {
       var positive: List[Assign] = Nil
 
 
@@ -163,6 +202,8 @@ final class MAC(prob: Problem, params: ParameterManager, val heuristic: Heuristi
            stack: Stack,
            maxBacktracks: Option[Int], nbAssignments: Int): (SolverResult, Stack, Option[Int], Int) = {
 
+    applySharedBound()
+
     val filtering = stack.current.andThen(s => filter.reduceAfter(modified, optimConstraint, s))
 
     filtering match {
@@ -176,14 +217,33 @@ final class MAC(prob: Problem, params: ParameterManager, val heuristic: Heuristi
             heuristic.event(BadDecision(decision), c)
           }
 
-          val (newStack, modified) = stack.backtrackAndApplyRightDecision
+          explainer.flatMap(_.analyze()) match {
+            case Some((literals, level)) =>
+              // Backjump to the level where the learnt nogood propagates
+              for (ngCons <- nogoods) ngCons.addExplained(literals)
+              explainer.foreach(_.backtrack(level))
+
+              logger.info(s"$level: learnt nogood ${literals.map { case (v, d) => s"$v in $d" }.mkString(", ")}")
+
+              val (uip, _) = literals.head
+              mac(Seq((uip, InsideRemoval)), stack.backjump(level), maxBacktracks.map(_ - 1), nbAssignments)
+
+            case None =>
+              val (newStack, modified) = stack.backtrackAndApplyRightDecision
 
-          logger.info(s"${newStack.size}: ${stack.rightStack.head.toString(stack.leftStack.head)}")
+              logger.info(s"${newStack.size}: ${stack.rightStack.head.toString(stack.leftStack.head)}")
 
-          logger.info(s"$maxBacktracks bt left")
+              logger.info(s"$maxBacktracks bt left")
 
-          // rightStack state replaces head state
-          mac(modified, newStack, maxBacktracks.map(_ - 1), nbAssignments)
+              for (e <- explainer) {
+                e.backtrack(newStack.size)
+                e.refuted()
+                recordDecision(e, modified, newStack.current)
+              }
+
+              // rightStack state replaces head state
+              mac(modified, newStack, maxBacktracks.map(_ - 1), nbAssignments)
+          }
         }
 
 
@@ -194,56 +254,136 @@ final class MAC(prob: Problem, params: ParameterManager, val heuristic: Heuristi
         } else if (maxBacktracks.exists(_ <= 0)) {
           (RESTART, stack.copy(current = fs), maxBacktracks, nbAssignments)
         } else {
-          val futureVariables = fs.getData[SparseSeq[Variable]](this)
-
-          // println(futureVariables.map(_.toString(fs)))
-
-          val assignments = Seq.newBuilder[Int]
-
-          val (candidates, assigned) = futureVariables.partitionLeft { v =>
-            val dom = fs.dom(v)
-            if (dom.isAssigned) {
-              assignments += dom.head
-              false
-            } else {
-              true
-            }
+          val sharedStack = workSharing match {
+            case Some(share) => share(stack)
+            case None => stack
           }
 
-          val filteredState =
-            heuristic.event(AssignmentEvent(assigned, assignments.result()), fs).updateData(this, candidates)
-
-          val decisions = heuristic.branch(filteredState, candidates)
-
-          decisions match {
-            case Left(c: Contradiction) => mac(Seq(), stack.copy(current = c), maxBacktracks, nbAssignments)
+          decide(fs) match {
+            case Left(c: Contradiction) => mac(Seq(), sharedStack.copy(current = c), maxBacktracks, nbAssignments)
             case Left(s: ProblemState) =>
-              // Find unassigned variables
-              problem.variables.find(v => !s.dom(v).isAssigned) match {
-                case Some(variable) =>
-                  val d = s.dom(variable)
-                  logger.info(s"Unassigned variable $variable")
-                  val b1 = Assign(variable, d.head)
-                  val b2 = Remove(variable, d.head)
-                  logger.info(s"${stack.size}: ${b1.toString(s)}")
-
-                  val (newStack, modified) = stack.push(s, b1, b2)
-                  mac(modified, newStack, maxBacktracks, nbAssignments + 1)
-
-                case None =>
-                  controlSolution(s)
-                  (SAT(extractSolution(s)), stack.copy(current = s), maxBacktracks, nbAssignments)
-              }
+              controlSolution(s)
+              (SAT(extractSolution(s)), sharedStack.copy(current = s), maxBacktracks, nbAssignments)
             case Right((s, b1, b2)) =>
-              logger.info(s"${stack.size}: ${b1.toString(s)}")
+              logger.info(s"${sharedStack.size}: ${b1.toString(s)}")
 
-              val (newStack, modified) = stack.push(s, b1, b2)
+              val (newStack, modified) = sharedStack.push(s, b1, b2)
+              for (e <- explainer) {
+                e.push(newStack.size)
+                recordDecision(e, modified, newStack.current)
+              }
               mac(modified, newStack, maxBacktracks, nbAssignments + 1)
           }
         }
     }
   }
 
+  private def recordDecision(explainer: Explainer, modified: Seq[(Variable, Event)], state: Outcome): Unit = {
+    for (ps <- state.map(identity); (v, _) <- modified) {
+      explainer.decided(v, ps.dom(v))
+    }
+  }
+
+  /**
+    * Selects the next decisions at a consistent node of the search tree.
+    *
+    * @return Left(contradiction), Left(state) if all variables are assigned or
+    *         Right((state, b1, b2)) with the decisions to apply to the state
+    */
+  private def decide(fs: ProblemState): Either[Outcome, (ProblemState, Decision, Decision)] = {
+    val futureVariables = fs.getData[SparseSeq[Variable]](this)
+
+    // println(futureVariables.map(_.toString(fs)))
+
+    val assignments = Seq.newBuilder[Int]
+
+    val (candidates, assigned) = futureVariables.partitionLeft { v =>
+      val dom = fs.dom(v)
+      if (dom.isAssigned) {
+        assignments += dom.head
+        false
+      } else {
+        true
+      }
+    }
+
+    val filteredState =
+      heuristic.event(AssignmentEvent(assigned, assignments.result()), fs).updateData(this, candidates)
+
+    heuristic.branch(filteredState, candidates) match {
+      case Left(s: ProblemState) =>
+        // Find unassigned variables
+        problem.variables.find(v => !s.dom(v).isAssigned) match {
+          case Some(variable) =>
+            val d = s.dom(variable)
+            logger.info(s"Unassigned variable $variable")
+            Right((s, Assign(variable, d.head), Remove(variable, d.head)))
+          case None =>
+            Left(s)
+        }
+      case decisions => decisions
+    }
+  }
+
+  /**
+    * Children of a consistent node of the search tree, after propagation.
+    *
+    * @return None if the node is a solution
+    */
+  def expand(fs: ProblemState): Option[Seq[(Decision, Outcome)]] = decide(fs) match {
+    case Left(_: Contradiction) => Some(Seq())
+    case Left(_) => None
+    case Right((s, b1, b2)) =>
+      Some(Seq(b1, b2).map { b =>
+        val (applied, modified) = b(s)
+        b -> applied.andThen(ps => filter.reduceAfter(modified, optimConstraint, ps))
+      })
+  }
+
+  /**
+    * Preprocessed initial state with initialized heuristics, to start searches
+    * from outside of nextSolution().
+    */
+  def root(): Outcome = {
+    firstRun = false
+    Stack(problem.initState(trailed))
+      .padConstraints(problem)
+      .current
+      .andThen(ps => preprocess(filter, ps).andThen(init))
+  }
+
+  /**
+    * Applies and propagates the given decisions, that may come from another
+    * instance of the problem.
+    */
+  def replay(state: Outcome, decisions: Seq[Decision]): Outcome = decisions.foldLeft(state) {
+    (o, d) =>
+      o.andThen { ps =>
+        val (applied, modified) = d.translate(problem)(ps)
+        applied.andThen(s => filter.reduceAfter(modified, optimConstraint, s))
+      }
+  }
+
+  /**
+    * Tightens the objective bound with a value found by another solver. May be
+    * called from any thread, the bound is applied by the search thread before
+    * the next propagation. The objective constraint must have been created
+    * beforehand with obtainOptimConstraint.
+    */
+  def tighten(bound: Int): Unit = sharedBound.set(Some(bound))
+
+  private def applySharedBound(): Unit = {
+    if (sharedBound.get.isDefined) {
+      for (bound <- sharedBound.getAndSet(None); oc <- optimConstraint) {
+        oc match {
+          case lt: LtC => lt.constant = math.min(lt.constant, bound)
+          case gt: GtC => gt.constant = math.max(gt.constant, bound)
+          case c => throw new IllegalStateException(s"Cannot tighten $c")
+        }
+      }
+    }
+  }
+
   def reset(): Unit = {
 
     restart = true
@@ -260,6 +400,10 @@ final class MAC(prob: Problem, params: ParameterManager, val heuristic: Heuristi
 
     running = true
 
+    for (e <- explainer; ps <- stack.current.map(identity) if stack.size == 0) {
+      e.reset(ps)
+    }
+
     val (macResult, macTime) =
       StatisticsManager.measure(
         mac(modified, stack, maxBacktracks, nbAssignments))
@@ -294,7 +438,7 @@ final class MAC(prob: Problem, params: ParameterManager, val heuristic: Heuristi
             sol(v) match {
               case i: Int =>
                 val oc = obtainOptimConstraint(new GtC(v, i))
-                oc.constant = i
+                oc.constant = math.max(oc.constant, i)
                 logger.info(s"new best value $i")
               case o => throw new AssertionError(s"$v has value $o which is not an int")
             }
@@ -304,7 +448,7 @@ final class MAC(prob: Problem, params: ParameterManager, val heuristic: Heuristi
             sol(v) match {
               case i: Int =>
                 val oc = obtainOptimConstraint(new LtC(v, i))
-                oc.constant = i
+                oc.constant = math.min(oc.constant, i)
                 logger.info(s"new best value $i")
               case o => throw new AssertionError(s"$v has value $o which is not an int")
             }
@@ -0,0 +1,295 @@
+package concrete
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{LinkedBlockingDeque, LinkedBlockingQueue, Semaphore, TimeUnit, TimeoutException}
+
+import com.typesafe.scalalogging.LazyLogging
+import concrete.heuristic.Decision
+import cspom.Statistic
+
+import scala.util.Try
+
+object ParallelSearch extends LazyLogging {
+  def apply(problem: Problem, decisionVariables: Seq[Variable], params: ParameterManager,
+            copy: () => Try[Problem]): Try[ParallelSearch] = {
+    val nbWorkers: Int = params.getOrElse("parallel.workers", Runtime.getRuntime.availableProcessors)
+
+    val workerParams = unexplained(params)
+
+    for (w <- Portfolio.workers(problem, decisionVariables, workerParams, copy, nbWorkers)(_ => workerParams)) yield {
+      new ParallelSearch(problem, params, w)
+    }
+  }
+
+  /**
+    * Workers solve subproblems from replayed states and give away right
+    * decisions, which nogoods learnt from conflicts and backjumps do not
+    * account for. Explanations are thus disabled.
+    */
+  private def unexplained(params: ParameterManager): ParameterManager = {
+    if (params.contains("mac.explain")) {
+      logger.warn("mac.explain is not supported by parallel search and is ignored")
+      params.removed("mac.explain")
+    } else {
+      params
+    }
+  }
+}
+
+/**
+  * Embarrassingly parallel search (Régin, Rezgui and Malapert, 2013). The
+  * first levels of the search tree are explored by the first worker until
+  * parallel.subproblems subproblems (30 per worker by default) are obtained.
+  * Subproblems are described by the decisions leading to them from the root,
+  * and are solved by MAC workers running on separate threads, each on its own
+  * instance of the problem, without restarts. When there are no subproblems
+  * left, idle workers steal the right decision closest to the root of the
+  * search of busy workers.
+  *
+  * The whole search tree is explored: all solutions are enumerated when
+  * satisfying, and improving solutions found by a worker tighten the objective
+  * bound of the others when optimizing. The search ends when all subproblems
+  * have been solved.
+  */
+final class ParallelSearch(prob: Problem, params: ParameterManager, val workers: Seq[MAC])
+  extends Solver(prob, params) with LazyLogging {
+
+  require(workers.head.problem eq problem)
+
+  private val nbSubproblems: Int = params.getOrElse("parallel.subproblems", 30 * workers.size)
+
+  @Statistic
+  var subproblems = 0
+  @Statistic
+  var nbSteals = 0
+  @Statistic
+  var nbAssignments = 0L
+  @Statistic
+  var searchCpu = 0.0
+
+  for ((w, i) <- workers.zipWithIndex) statistics.register(s"worker$i", w)
+
+  private val tasks = new LinkedBlockingDeque[Seq[Decision]]()
+
+  /**
+    * Number of subproblems either queued or being solved
+    */
+  private val pending = new AtomicInteger()
+
+  /**
+    * Number of workers waiting for a subproblem
+    */
+  private val hungry = new AtomicInteger()
+
+  private val results = new LinkedBlockingQueue[SolverResult]()
+
+  /**
+    * Permits to produce solutions when satisfying, so that workers do not
+    * enumerate solutions that are not requested
+    */
+  private val requested = new Semaphore(0)
+
+  /**
+    * Best objective value found by any worker, guarded by this
+    */
+  private var best: Option[Int] = None
+
+  private var threads: Seq[Thread] = Nil
+
+  private var started = false
+
+  private var finished: Option[SolverResult] = None
+
+  private val translations: Seq[Array[Variable]] =
+    workers.map(w => w.problem.variables.map(v => problem.variable(v.name)))
+
+  /**
+    * Explores the first levels of the search tree breadth-first, until the
+    * given number of nodes is reached or nodes cannot be expanded anymore.
+    *
+    * @return paths to the consistent nodes of the last explored level
+    */
+  def decompose(master: MAC, root: ProblemState, target: Int): Seq[Seq[Decision]] = {
+    var frontier: Seq[(List[Decision], ProblemState)] = Seq((Nil, root))
+    var expanded = true
+    while (expanded && frontier.size < target && !Thread.currentThread().isInterrupted) {
+      expanded = false
+      frontier = frontier.flatMap {
+        case node@(path, state) =>
+          master.expand(state) match {
+            case None => Seq(node)
+            case Some(children) =>
+              expanded = true
+              children.collect {
+                case (decision, child: ProblemState) => (decision :: path, child)
+              }
+          }
+      }
+    }
+    frontier.map(_._1.reverse)
+  }
+
+  private def translate(i: Int, sol: Map[Variable, Any]): SolverResult =
+    SAT(sol.map { case (v, value) => translations(i)(v.id) -> value })
+
+  private def improves(value: Int): Boolean = best.forall { b =>
+    problem.goal match {
+      case Minimize(_) => value < b
+      case Maximize(_) => value > b
+      case Satisfy => throw new IllegalStateException()
+    }
+  }
+
+  /**
+    * Called by worker threads
+    */
+  private def publish(i: Int, sol: Map[Variable, Any]): Unit = {
+    if (optimises.isDefined) {
+      synchronized {
+        val w = workers(i)
+        val value = util.Math.any2Int(sol(w.problem.goal.optimizes.get))
+        if (improves(value)) {
+          best = Some(value)
+          for (other <- workers if other ne w) other.tighten(value)
+          results.put(translate(i, sol))
+        }
+      }
+    } else {
+      requested.acquire()
+      results.put(translate(i, sol))
+    }
+  }
+
+  /**
+    * Gives away the oldest right decision of the stack of a worker if some
+    * worker is waiting for a subproblem
+    *
+    * @param path decisions leading to the subproblem solved by the worker
+    */
+  private def share(path: Seq[Decision], stack: Stack): Stack = {
+    if (hungry.get > 0 && tasks.isEmpty) {
+      stack.steal match {
+        case Some((newStack, stolen)) =>
+          pending.incrementAndGet()
+          tasks.addLast(path ++ stolen)
+          synchronized(nbSteals += 1)
+          newStack
+        case None => stack
+      }
+    } else {
+      stack
+    }
+  }
+
+  /**
+    * @return false if the search has been interrupted
+    */
+  private def solve(w: MAC, i: Int, root: Outcome, path: Seq[Decision]): Boolean = {
+    w.workSharing = Some(stack => share(path, stack))
+    try {
+      explore(w, i, Stack(w.replay(root, path)))
+    } finally {
+      w.workSharing = None
+    }
+  }
+
+  @annotation.tailrec
+  private def explore(w: MAC, i: Int, stack: Stack): Boolean = {
+    val (result, newStack, _) = w.nextSolution(Seq(), stack, None)
+    result match {
+      case SAT(sol) =>
+        publish(i, sol)
+        explore(w, i, newStack)
+      case UNSAT => true
+      case UNKNOWNResult(Some(_: TimeoutException)) => false
+      case r =>
+        results.put(r)
+        false
+    }
+  }
+
+  private def work(i: Int, initial: Option[Outcome]): Unit = {
+    val w = workers(i)
+    try {
+      val root = initial.getOrElse(w.root())
+      var continue = true
+      while (continue) {
+        hungry.incrementAndGet()
+        val task = tasks.pollFirst(10, TimeUnit.MILLISECONDS)
+        hungry.decrementAndGet()
+        if (task != null) {
+          continue = solve(w, i, root, task)
+          if (continue && pending.decrementAndGet() == 0) {
+            // All subproblems have been solved
+            results.put(UNSAT)
+          }
+        } else if (pending.get == 0) {
+          continue = false
+        }
+      }
+    } catch {
+      case _: InterruptedException =>
+      case e: Throwable => results.put(UNKNOWNResult(e))
+    }
+  }
+
+  private def start(): Unit = {
+    started = true
+    val master = workers.head
+    val root = master.root()
+    val paths = root match {
+      case ps: ProblemState => decompose(master, ps, nbSubproblems)
+      case _: Contradiction => Seq()
+    }
+    subproblems = paths.size
+    logger.info(s"${paths.size} subproblems")
+
+    if (paths.isEmpty) {
+      finished = Some(UNSAT)
+    } else {
+      pending.set(paths.size)
+      paths.foreach(tasks.addLast)
+      threads = workers.indices.map { i =>
+        val t = new Thread(() => work(i, if (i == 0) Some(root) else None), s"parallel-worker-$i")
+        t.setDaemon(true)
+        t
+      }
+      threads.foreach(_.start())
+    }
+  }
+
+  private def cancel(): Unit = {
+    threads.foreach(_.interrupt())
+    threads.foreach(_.join())
+    threads = Nil
+  }
+
+  def nextSolution(): SolverResult = {
+    val result = finished.getOrElse {
+      try {
+        if (!started) start()
+        finished.getOrElse {
+          if (optimises.isEmpty) requested.release()
+          results.take() match {
+            case sat: SAT => sat
+            case r =>
+              cancel()
+              finished = Some(r)
+              r
+          }
+        }
+      } catch {
+        case _: InterruptedException =>
+          cancel()
+          UNKNOWNResult(new TimeoutException())
+      }
+    }
+    nbAssignments = workers.map(_.nbAssignments.toLong).sum
+    searchCpu = workers.map(_.searchCpu).sum
+    result
+  }
+
+  def reset(): Unit = workers.foreach(_.reset())
+
+  override def toString: String = s"parallel search with ${workers.size} MAC solvers"
+}
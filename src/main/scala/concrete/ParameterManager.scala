@@ -38,6 +38,17 @@ final class ParameterManager(
       used)
   }
 
+  /**
+    * Removes some parameter, restoring default value.
+    *
+    * @param name
+    */
+  def removed(name: String): ParameterManager = {
+    new ParameterManager(
+      parameters - name,
+      used)
+  }
+
   def getOrElse[T: TypeTag](name: String, default: => T): T = {
     get[T](name).getOrElse(default)
   }
@@ -0,0 +1,257 @@
+package concrete
+
+import java.util.concurrent.{LinkedBlockingQueue, TimeoutException}
+
+import com.typesafe.scalalogging.LazyLogging
+import concrete.constraint.Constraint
+import concrete.constraint.linear.{GtC, LtC}
+import concrete.heuristic.{CrossHeuristic, Heuristic}
+import cspom.Statistic
+
+import scala.util.Try
+
+object Portfolio {
+
+  /**
+    * Variable heuristics used to diversify workers, when not given by the user
+    */
+  val VARIABLE_HEURISTICS = Seq(
+    "LastConflict,WDegOnDom,RandomVar",
+    "LastConflict,DDegOnDom,RandomVar",
+    "LastConflict,WArcsOnDom,RandomVar",
+    "LastConflict,PropagationGuidedWDegOnDom,RandomVar",
+    "LastConflict,Dom,RandomVar")
+
+  /**
+    * Restart strategies used to diversify workers, when not given by the user
+    */
+  val RESTARTS = Seq("Geometric", "Luby")
+
+  def apply(problem: Problem, decisionVariables: Seq[Variable], params: ParameterManager,
+            copy: () => Try[Problem]): Try[Portfolio] = {
+    val nbWorkers: Int = params.getOrElse("portfolio.workers", Runtime.getRuntime.availableProcessors)
+
+    for (w <- workers(problem, decisionVariables, params, copy, nbWorkers)(workerParams(params, _))) yield {
+      new Portfolio(problem, params, w)
+    }
+  }
+
+  /**
+    * Builds MAC solvers for parallel searches. The first one solves the given
+    * problem, the other ones solve new instances of it. Objective constraints
+    * are created beforehand so that workers can be tightened.
+    */
+  def workers(problem: Problem, decisionVariables: Seq[Variable], params: ParameterManager,
+              copy: () => Try[Problem], nbWorkers: Int)(workerParams: Int => ParameterManager): Try[Seq[MAC]] = {
+    val dv = params.getRaw("heuristic") match {
+      case Some(h: Heuristic) => h.decisionVariables
+      case _ => decisionVariables
+    }
+
+    for {
+      problems <- Try(problem +: Seq.fill(nbWorkers - 1)(copy().get))
+      workers <- Try {
+        problems.zipWithIndex.map {
+          case (p, 0) => MAC(p, decisionVariables, params).get
+          case (p, i) => MAC(p, dv.map(v => p.variable(v.name)), unbound(workerParams(i))).get
+        }
+      }
+    } yield {
+      for (w <- workers; oc <- objective(w)) w.obtainOptimConstraint(oc)
+      workers
+    }
+  }
+
+  private def objective(w: MAC): Option[Constraint] = w.problem.goal match {
+    case Minimize(v) => Some(new LtC(v, Int.MaxValue))
+    case Maximize(v) => Some(new GtC(v, Int.MinValue))
+    case Satisfy => None
+  }
+
+  /**
+    * Heuristic instances are bound to the variables of the first problem, and
+    * are replaced by the default heuristic for the other instances.
+    */
+  def unbound(params: ParameterManager): ParameterManager = params.getRaw("heuristic") match {
+    case Some(_: Heuristic) => params.updated("heuristic", classOf[CrossHeuristic])
+    case _ => params
+  }
+
+  /**
+    * Worker 0 uses the given parameters, other workers use other seeds and,
+    * unless given by the user, other variable heuristics and restart
+    * strategies.
+    */
+  def workerParams(params: ParameterManager, i: Int): ParameterManager = {
+    if (i == 0) {
+      params
+    } else {
+      var pm = params.updated("randomseed", params.getOrElse("randomseed", 0L) + i)
+
+      if (!params.contains("heuristic.variable")) {
+        pm = pm.updated("heuristic.variable", VARIABLE_HEURISTICS(i % VARIABLE_HEURISTICS.size))
+      }
+      if (!params.contains("mac.restart")) {
+        pm = pm.updated("mac.restart", RESTARTS(i % RESTARTS.size))
+      }
+      pm
+    }
+  }
+}
+
+/**
+  * Runs several MAC instances on separate threads, each on its own instance
+  * of the problem. For satisfaction problems, the first worker to find a
+  * solution or to prove unsatisfiability wins and the others are cancelled;
+  * further solutions are enumerated by the winner. For optimization problems,
+  * each improving solution found by a worker tightens the objective bound of
+  * the others, and the first proof that no better solution exists ends the
+  * search.
+  */
+final class Portfolio(prob: Problem, params: ParameterManager, val workers: Seq[MAC])
+  extends Solver(prob, params) with LazyLogging {
+
+  require(workers.head.problem eq problem)
+
+  @Statistic
+  var winner: Int = -1
+  @Statistic
+  var nbImprovements = 0
+
+  for ((w, i) <- workers.zipWithIndex) statistics.register(s"worker$i", w)
+
+  /**
+    * Variables of the problem of each worker mapped to the variables of this
+    * problem, indexed by id
+    */
+  private val translations: Seq[Array[Variable]] =
+    workers.map(w => w.problem.variables.map(v => problem.variableMap(v.name)))
+
+  private val results = new LinkedBlockingQueue[(Int, SolverResult)]()
+
+  private var threads: Seq[Thread] = Nil
+
+  private var started = false
+
+  /**
+    * Number of workers still searching
+    */
+  private var active = 0
+
+  /**
+    * Best objective value found by any worker, guarded by this
+    */
+  private var best: Option[Int] = None
+
+  private var firstFailure: Option[SolverResult] = None
+
+  private def translate(i: Int, result: SolverResult): SolverResult = result match {
+    case SAT(sol) => SAT(sol.map { case (v, value) => translations(i)(v.id) -> value })
+    case r => r
+  }
+
+  private def improves(value: Int): Boolean = best.forall { b =>
+    problem.goal match {
+      case Minimize(_) => value < b
+      case Maximize(_) => value > b
+      case Satisfy => throw new IllegalStateException()
+    }
+  }
+
+  /**
+    * Called by worker threads
+    */
+  private def publish(i: Int, sol: Map[Variable, Any]): Unit = synchronized {
+    val w = workers(i)
+    val value = util.Math.any2Int(sol(w.problem.goal.optimizes.get))
+    if (improves(value)) {
+      best = Some(value)
+      // Queue the solution before tightening: a tightened worker may then
+      // prove optimality, and its UNSAT must not be taken first
+      results.put((i, translate(i, SAT(sol))))
+      for (other <- workers if other ne w) other.tighten(value)
+    }
+  }
+
+  private def work(i: Int): Unit = {
+    val w = workers(i)
+    try {
+      var continue = true
+      while (continue) {
+        w.nextSolution() match {
+          case SAT(sol) if optimises.isDefined => publish(i, sol)
+          case r =>
+            results.put((i, translate(i, r)))
+            continue = false
+        }
+      }
+    } catch {
+      case e: Throwable => results.put((i, UNKNOWNResult(e)))
+    }
+  }
+
+  private def start(): Unit = {
+    threads = workers.indices.map { i =>
+      val t = new Thread(() => work(i), s"portfolio-worker-$i")
+      t.setDaemon(true)
+      t
+    }
+    active = threads.size
+    started = true
+    threads.foreach(_.start())
+  }
+
+  private def cancel(): Unit = {
+    threads.foreach(_.interrupt())
+    threads.foreach(_.join())
+    threads = Nil
+    active = 0
+  }
+
+  @annotation.tailrec
+  private def await(): SolverResult = {
+    if (active == 0) {
+      firstFailure.getOrElse(UNKNOWNResult(None))
+    } else {
+      val (i, result) = results.take()
+      result match {
+        case SAT(_) if optimises.isDefined =>
+          nbImprovements += 1
+          result
+        case SAT(_) | UNSAT =>
+          winner = i
+          cancel()
+          result
+        case _ =>
+          // Worker failed, the others keep on searching
+          logger.warn(s"Worker $i ended with $result")
+          active -= 1
+          if (firstFailure.isEmpty) firstFailure = Some(result)
+          await()
+      }
+    }
+  }
+
+  def nextSolution(): SolverResult = {
+    if (winner >= 0) {
+      if (optimises.isDefined) {
+        UNSAT
+      } else {
+        translate(winner, workers(winner).nextSolution())
+      }
+    } else {
+      if (!started) start()
+      try {
+        await()
+      } catch {
+        case _: InterruptedException =>
+          cancel()
+          UNKNOWNResult(new TimeoutException())
+      }
+    }
+  }
+
+  def reset(): Unit = workers.foreach(_.reset())
+
+  override def toString: String = s"portfolio of ${workers.size} MAC solvers"
+}
@@ -64,6 +64,8 @@ final class Problem(val variables: Array[Variable], val goal: Goal = Satisfy) {
 
   def initState(decisionVariables: Set[Variable]): Outcome = ProblemState(this, decisionVariables)
 
+  def initState(trailed: Boolean): Outcome = ProblemState(this, variables.toSet, trailed)
+
   def toString(state: ProblemState): String = {
     variables.map(_.toString(state)).mkString("\n") + "\n" +
       constraints.iterator
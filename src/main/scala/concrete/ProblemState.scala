@@ -3,7 +3,7 @@ package concrete
 import bitvectors.BitVector
 import com.typesafe.scalalogging.LazyLogging
 import concrete.constraint.{Constraint, StatefulConstraint}
-import concrete.util.{IdentityMap, Interval}
+import concrete.util.{IdentityMap, Interval, MapStore, Store, TrailedStore}
 import cspom.UNSATException
 
 import scala.annotation.tailrec
@@ -168,11 +168,24 @@ case class Contradiction(cause: Option[Constraint], from: Seq[Variable], to: Seq
 object ProblemState {
 
 
-  def apply(problem: Problem, decisionVariables: Set[Variable]): Outcome = {
-    val doms = problem.variables.zipWithIndex.map { case (x, i) => i -> x.initDomain }
-      .to(IntMap)
+  def apply(problem: Problem, decisionVariables: Set[Variable]): Outcome = apply(problem, decisionVariables, trailed = false)
+
+  /**
+    * @param trailed use trailed stores for domains and constraint states:
+    *                updates are done in place and undone when older states are
+    *                accessed again, instead of copying map paths
+    */
+  def apply(problem: Problem, decisionVariables: Set[Variable], trailed: Boolean): Outcome = {
+    val domains: Store[Domain] = if (trailed) {
+      TrailedStore(problem.variables.map(_.initDomain))
+    } else {
+      new MapStore(problem.variables.zipWithIndex.map { case (x, i) => i -> x.initDomain }.to(IntMap))
+    }
+    val constraintStates: Store[AnyRef] = if (trailed) TrailedStore.empty else new MapStore(Map())
+
     new ProblemState(
-      domains = doms,
+      domains = domains,
+      constraintStates = constraintStates,
       entailed = EntailmentManager(problem.variables.toSeq)
     )
       .padConstraints(problem.constraints)
@@ -210,8 +223,8 @@ object ProblemState {
 }
 
 class ProblemState(
-                    private val domains: IntMap[Domain],
-                    private val constraintStates: Map[Int, AnyRef] = Map(),
+                    private val domains: Store[Domain],
+                    private val constraintStates: Store[AnyRef] = new MapStore(Map()),
                     private val initializedConstraints: Int = 0,
                     val entailed: EntailmentManager,
                     val recentUpdates: IntMap[Domain] = IntMap(),
@@ -219,8 +232,8 @@ class ProblemState(
                     data: IdentityMap[AnyRef, Any] = new IdentityMap[AnyRef, Any]()) extends Outcome
   with LazyLogging {
 
-  //  def this(domains: Vector[Domain], constraintStates: Vector[AnyRef], entailed: EntailmentManager)
-  //  = this(domains, constraintStates, entailed, new IdentityMap[AnyRef, Any]())
+  def this(domains: IntMap[Domain], entailed: EntailmentManager) =
+    this(new MapStore(domains), new MapStore(Map()), 0, entailed)
 
   def clearRecent: ProblemState = {
 
@@ -295,7 +308,7 @@ class ProblemState(
   def assign(v: Variable, value: Int): ProblemState = {
     val assigned = dom(v).assign(value)
     assert(assigned.nonEmpty)
-    updateDomNonEmpty(v, dom(v).assign(value))
+    updateDomNonEmpty(v, assigned)
   }
 
   //def isEntailed(c: Constraint): Boolean = entailed(c.id)
@@ -355,7 +368,7 @@ class ProblemState(
     assert(dom(variable) ne newDomain)
     val id = variable.id
     assert(id >= 0 || (dom(variable) eq newDomain), s"$variable updated to $newDomain is not a problem variable")
-    assert(!newDomain.isInstanceOf[BitVectorDomain] || (newDomain.size <= newDomain.last - newDomain.head))
+    assert(!(newDomain.isInstanceOf[BitVectorDomain] || newDomain.isInstanceOf[SmallBitDomain]) || (newDomain.size <= newDomain.last - newDomain.head))
 
 
     //    if (pending.size >= 64) {
@@ -4,22 +4,51 @@ import bitvectors.BitVector
 import com.typesafe.scalalogging.LazyLogging
 import concrete.util.Interval
 
-import scala.collection.mutable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicReferenceArray
 
 object Singleton {
-  private val cache = new mutable.HashMap[Int, Singleton]
+  /**
+    * Values in [WINDOW_LB, WINDOW_UB) are interned in an array, other values
+    * in a concurrent map. Domains are compared by identity, so interning
+    * must never create two instances of the same value, even when solvers
+    * run in parallel.
+    */
+  val WINDOW_LB: Int = -1024
+  val WINDOW_UB: Int = 1 << 15
+
+  private val window = new AtomicReferenceArray[Singleton](WINDOW_UB - WINDOW_LB)
+
+  private val outliers = new ConcurrentHashMap[Int, Singleton]()
 
   def apply(v: Int): Singleton = {
-    cache.getOrElseUpdate(v, new Singleton(v))
+    if (v >= WINDOW_LB && v < WINDOW_UB) {
+      val i = v - WINDOW_LB
+      val s = window.get(i)
+      if (s ne null) {
+        s
+      } else {
+        val created = new Singleton(v)
+        if (window.compareAndSet(i, null, created)) created else window.get(i)
+      }
+    } else {
+      outliers.computeIfAbsent(v, new Singleton(_))
+    }
   }
+
+  private final class Shifted(val offset: Int, val bitVector: BitVector)
+
 }
 
 final class Singleton private(val singleValue: Int) extends IntDomain with LazyLogging {
 
   lazy val bitVector: BitVector = BitVector.empty + singleValue
   val span = Interval(singleValue, singleValue)
-  var requestedOffset: Int = _
-  var requestedBV: BitVector = _
+  /**
+    * Last requested shifted bit vector. Singletons are shared between solvers,
+    * so offset and bit vector are updated together
+    */
+  private var requested: Singleton.Shifted = _
 
   def spanOption = Some(span)
 
@@ -132,21 +161,25 @@ final class Singleton private(val singleValue: Int) extends IntDomain with LazyL
     if (v == singleValue) {
       this
     } else {
-      val offset = math.min(singleValue, v)
-      val union = toBitVector(offset) + (v - offset)
-      IntDomain.ofBitVector(offset, union, 2)
+      val builder = new IntervalListDomain.Builder(2)
+      builder.add(math.min(v, singleValue), math.min(v, singleValue))
+      builder.add(math.max(v, singleValue), math.max(v, singleValue))
+      builder.result()
     }
   }
 
   def toBitVector(offset: Int): BitVector =
     if (offset == 0)
       bitVector
-    else if (requestedBV != null && offset == requestedOffset) {
-      requestedBV
-    } else {
-      requestedOffset = offset
-      requestedBV = BitVector.empty + (singleValue - offset)
-      requestedBV
+    else {
+      val r = requested
+      if (r != null && offset == r.offset) {
+        r.bitVector
+      } else {
+        val bv = BitVector.empty + (singleValue - offset)
+        requested = new Singleton.Shifted(offset, bv)
+        bv
+      }
     }
 
   // override def apply(i: Int): Int = if (i == 0) singleValue else throw new IndexOutOfBoundsException
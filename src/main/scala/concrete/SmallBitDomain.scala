@@ -0,0 +1,302 @@
+package concrete
+
+import java.lang.Long.{bitCount, numberOfLeadingZeros, numberOfTrailingZeros}
+
+import bitvectors.BitVector
+import com.typesafe.scalalogging.LazyLogging
+import concrete.util.{CacheOne, Interval}
+
+object SmallBitDomain {
+  final val MAX_SPAN = 64
+
+  /**
+    * @return the mask of bits from to to, both included, with
+    *         0 <= from <= to < 64
+    */
+  def range(from: Int, to: Int): Long = (-1L << from) & (-1L >>> (63 - to))
+
+  /**
+    * @return the bits of mask, representing values starting from offset,
+    *         whose value satisfies f
+    */
+  def filter(offset: Int, mask: Long, f: Int => Boolean): Long = {
+    var filtered = mask
+    var bits = mask
+    while (bits != 0L) {
+      val b = numberOfTrailingZeros(bits)
+      if (!f(offset + b)) filtered &= ~(1L << b)
+      bits &= bits - 1
+    }
+    filtered
+  }
+}
+
+/**
+  * Domains whose span fits in a single word. Value offset + i is present iff
+  * bit i of mask is set. The offset is always the lower bound, so that bit 0
+  * is set.
+  */
+final class SmallBitDomain(val offset: Int, val mask: Long) extends IntDomain with LazyLogging {
+
+  override val size: Int = bitCount(mask)
+  override val last: Int = offset + 63 - numberOfLeadingZeros(mask)
+
+  assert((mask & 1L) != 0, "Offset must be the lower bound")
+  assert(size >= 2, "SmallBitDomains must have at least two elements")
+  assert(size <= last - offset, "Convex domains must be IntervalDomains")
+
+  lazy val span = Interval(head, last)
+
+  private val bvOffset = new CacheOne[Int, BitVector]()
+
+  override def head: Int = offset
+
+  def singleValue = throw new IllegalStateException(s"Tried to obtain single value of $this ")
+
+  def isAssigned = false
+
+  def convex = false
+
+  override def isEmpty = false
+
+  /**
+    * @return the bits of this domain, representing values starting from o,
+    *         truncated to 64 values
+    */
+  def maskFrom(o: Int): Long = {
+    if (o >= offset) {
+      val d = o - offset
+      if (d >= 64) 0L else mask >>> d
+    } else {
+      val d = offset - o
+      if (d >= 64) 0L else mask << d
+    }
+  }
+
+  /**
+    * @return the bits of values between lb and ub, both included
+    */
+  private def maskBetween(lb: Int, ub: Int): Long = {
+    if (lb > last || ub < head) {
+      0L
+    } else {
+      mask & SmallBitDomain.range(math.max(lb, head) - offset, math.min(ub, last) - offset)
+    }
+  }
+
+  private def ofMask(m: Long): IntDomain = if (m == mask) this else IntDomain.ofMask(offset, m)
+
+  /**
+    * @param value to test
+    * @return true iff value is present
+    */
+  def contains(value: Int): Boolean = {
+    Domain.checks += 1
+    val b = value - offset
+    b >= 0 && b < 64 && ((mask >>> b) & 1L) != 0L
+  }
+
+  override def next(i: Int): Int = {
+    val b = i - offset + 1
+    val m = if (b <= 0) mask else if (b >= 64) 0L else mask & (-1L << b)
+    if (m == 0L) throw new NoSuchElementException else offset + numberOfTrailingZeros(m)
+  }
+
+  override def prev(i: Int): Int = {
+    val b = i - offset
+    val m = if (b <= 0) 0L else if (b >= 64) mask else mask & ((1L << b) - 1)
+    if (m == 0L) throw new NoSuchElementException else offset + 63 - numberOfLeadingZeros(m)
+  }
+
+  def excl(value: Int): IntDomain = {
+    if (contains(value)) {
+      IntDomain.ofMask(offset, mask & ~(1L << (value - offset)))
+    } else {
+      this
+    }
+  }
+
+  def removeFrom(lb: Int): IntDomain = {
+    if (lb <= head) {
+      EmptyIntDomain
+    } else if (lb > last) {
+      this
+    } else {
+      IntDomain.ofMask(offset, mask & ((1L << (lb - offset)) - 1))
+    }
+  }
+
+  def removeAfter(lb: Int): IntDomain = removeFrom(lb + 1)
+
+  def removeUntil(ub: Int): IntDomain = {
+    if (ub <= head) {
+      this
+    } else if (ub > last) {
+      EmptyIntDomain
+    } else {
+      IntDomain.ofMask(offset, mask & (-1L << (ub - offset)))
+    }
+  }
+
+  def removeTo(ub: Int): IntDomain = removeUntil(ub + 1)
+
+  def &(lb: Int, ub: Int): IntDomain = ofMask(maskBetween(lb, ub))
+
+  override def filter(f: Int => Boolean): IntDomain = ofMask(SmallBitDomain.filter(offset, mask, f))
+
+  override def filterBounds(f: Int => Boolean): IntDomain = {
+    var m = mask
+    while (m != 0L && !f(offset + numberOfTrailingZeros(m))) m &= m - 1
+    while (m != 0L && !f(offset + 63 - numberOfLeadingZeros(m))) m &= ~java.lang.Long.highestOneBit(m)
+    ofMask(m)
+  }
+
+  override def &(d: Domain): Domain = d match {
+    case id: IntervalDomain => this & (id.head, id.last)
+    case s: Singleton => if (contains(s.singleValue)) s else EmptyIntDomain
+    case sb: SmallBitDomain =>
+      val o = math.max(offset, sb.offset)
+      val m = maskFrom(o) & sb.maskFrom(o)
+      val card = bitCount(m)
+      if (card == size) {
+        this
+      } else if (card == sb.size) {
+        sb
+      } else {
+        IntDomain.ofMask(o, m)
+      }
+    case EmptyIntDomain => EmptyIntDomain
+    case b: BooleanDomain => b & this
+    case _ => filter(d)
+  }
+
+  override def |(d: Domain): Domain = d match {
+    case s: Singleton => this | s.singleValue
+
+    case id: IntervalDomain => this | id.span
+
+    case sb: SmallBitDomain =>
+      val o = math.min(offset, sb.offset)
+      if (math.max(last, sb.last).toLong - o < 64) {
+        IntDomain.ofMask(o, maskFrom(o) | sb.maskFrom(o))
+      } else {
+        IntervalListDomain.union(IntervalListDomain.intervalsOf(this), IntervalListDomain.intervalsOf(sb)).result()
+      }
+
+    case EmptyIntDomain | BooleanDomain.EMPTY => this
+
+    case b: BooleanDomain => this | b.span
+
+    case _ => d | this
+  }
+
+  def |(value: Int): IntDomain = {
+    if (contains(value)) {
+      this
+    } else {
+      val o = math.min(value, offset)
+      if (math.max(value, last).toLong - o < 64) {
+        IntDomain.ofMask(o, maskFrom(o) | (1L << (value - o)))
+      } else {
+        IntervalListDomain.union(IntervalListDomain.intervalsOf(this), Array(value, value)).result()
+      }
+    }
+  }
+
+  def |(span: Interval): IntDomain = {
+    val o = math.min(span.lb, offset)
+    if (math.max(span.ub, last).toLong - o < 64) {
+      IntDomain.ofMask(o, maskFrom(o) | SmallBitDomain.range(span.lb - o, span.ub - o))
+    } else {
+      IntervalListDomain.union(IntervalListDomain.intervalsOf(this), Array(span.lb, span.ub)).result()
+    }
+  }
+
+  def disjoint(d: Domain): Boolean = d match {
+    case id: IntervalDomain => maskBetween(id.head, id.last) == 0L
+    case s: Singleton => !contains(s.singleValue)
+    case sb: SmallBitDomain =>
+      val o = math.max(offset, sb.offset)
+      (maskFrom(o) & sb.maskFrom(o)) == 0L
+    case EmptyIntDomain => true
+    case b: BooleanDomain => b.disjoint(this)
+    case _ => head > d.last || last < d.head || !exists(d)
+  }
+
+  def subsetOf(d: Domain): Boolean = {
+    d match {
+      case EmptyIntDomain | BooleanDomain.EMPTY | _: Singleton => false
+      case d@(_: IntervalDomain | _: BooleanDomain) => head >= d.head && last <= d.last
+      case sb: SmallBitDomain => head >= sb.head && last <= sb.last && (sb.maskFrom(offset) & mask) == mask
+      case _ => head >= d.head && last <= d.last && forall(d)
+    }
+  }
+
+  def toBitVector(offset: Int): BitVector = {
+    bvOffset(offset, {
+      logger.trace(s"generating BV from offset ${this.offset} to $offset")
+      BitVector(java.util.BitSet.valueOf(Array(mask))).shift(this.offset - offset)
+    })
+  }
+
+  def shift(o: Int): IntDomain = if (o == 0) this else
+    new SmallBitDomain(offset + o, mask)
+
+  def median: Int = {
+    var m = mask
+    var i = size / 2
+    while (i > 0) {
+      m &= m - 1
+      i -= 1
+    }
+    offset + numberOfTrailingZeros(m)
+  }
+
+  override def foreach[U](f: Int => U): Unit = {
+    var bits = mask
+    while (bits != 0L) {
+      f(offset + numberOfTrailingZeros(bits))
+      bits &= bits - 1
+    }
+  }
+
+  def iterator: Iterator[Int] = new SBDIterator(mask)
+
+  def iteratorFrom(start: Int): Iterator[Int] = {
+    val b = start - offset
+    new SBDIterator(if (b <= 0) mask else if (b >= 64) 0L else mask & (-1L << b))
+  }
+
+  def reverseIterator: Iterator[Int] = new Iterator[Int] {
+    private var bits = mask
+
+    def hasNext: Boolean = bits != 0L
+
+    def next(): Int = {
+      if (bits == 0L) throw new NoSuchElementException
+      val b = 63 - numberOfLeadingZeros(bits)
+      bits &= ~(1L << b)
+      offset + b
+    }
+  }
+
+  override def toString: String =
+    if (size <= IntDomain.DISPLAYED_VALUES) {
+      view.mkString("{", ", ", "}")
+    } else {
+      view.take(IntDomain.DISPLAYED_VALUES - 1)
+        .mkString("{", ", ", s", [${size - IntDomain.DISPLAYED_VALUES}...], $last}")
+    }
+
+  final private class SBDIterator(private var bits: Long) extends Iterator[Int] {
+    def hasNext: Boolean = bits != 0L
+
+    def next(): Int = {
+      if (bits == 0L) throw new NoSuchElementException
+      val b = numberOfTrailingZeros(bits)
+      bits &= bits - 1
+      offset + b
+    }
+  }
+
+}
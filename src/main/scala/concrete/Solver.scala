@@ -24,14 +24,14 @@ import concrete.constraint.extension.{BinaryExt, ReduceableExt}
 import concrete.constraint.linear.LinearLe
 import concrete.constraint.semantic.DiffN
 import concrete.constraint.{Constraint, TupleEnumerator}
-import concrete.filter.Filter
+import concrete.filter.{Filter, Profiler}
 import concrete.generator.ProblemGenerator
 import concrete.generator.cspompatterns.ConcretePatterns
 import cspom.compiler.CSPOMCompiler
 import cspom.{CSPOM, Statistic, StatisticsManager}
 import scala.jdk.CollectionConverters._
 
-import scala.util.Try
+import scala.util.{Failure, Try}
 
 object Solver {
   def apply(cspom: CSPOM): Try[CSPOMSolver] = apply(cspom, new ParameterManager)
@@ -42,7 +42,8 @@ object Solver {
       pg = new ProblemGenerator(pm)
       (problem, variables) <- pg.generate(cspom)
       solver <- apply(problem,
-        problem.variables.toSeq.filter(x => cspom.expressionMap.expression(x.name).isDefined), pm)
+        problem.variables.toSeq.filter(x => cspom.expressionMap.expression(x.name).isDefined), pm,
+        () => new ProblemGenerator(pm).generate(cspom).map(_._1))
     } yield {
       solver.statistics.register("compiler", CSPOMCompiler)
       solver.statistics.register("generator", pg)
@@ -51,13 +52,26 @@ object Solver {
     }
   }
 
-  def apply(problem: Problem, decisionVariables: Seq[Variable], pm: ParameterManager): Try[Solver] = {
+  def apply(problem: Problem, decisionVariables: Seq[Variable], pm: ParameterManager): Try[Solver] =
+    apply(problem, decisionVariables, pm,
+      () => Failure(new UnsupportedOperationException("Cannot generate a new instance of the problem")))
+
+  /**
+    * @param copy generates new instances of the problem, used by solvers
+    *             running several searches in parallel
+    */
+  def apply(problem: Problem, decisionVariables: Seq[Variable], pm: ParameterManager, copy: () => Try[Problem]): Try[Solver] = {
     val solverClass: Class[_ <: Solver] =
       pm.classInPackage("solver", "concrete", classOf[MAC])
 
-    solverClass
-      .getMethod("apply", classOf[Problem], classOf[Seq[_]], classOf[ParameterManager])
-      .invoke(null, problem, decisionVariables, pm)
+    Try(solverClass.getMethod("apply", classOf[Problem], classOf[Seq[_]], classOf[ParameterManager], classOf[() => _]))
+      .toOption
+      .map(_.invoke(null, problem, decisionVariables, pm, copy))
+      .getOrElse {
+        solverClass
+          .getMethod("apply", classOf[Problem], classOf[Seq[_]], classOf[ParameterManager])
+          .invoke(null, problem, decisionVariables, pm)
+      }
       .asInstanceOf[Try[Solver]]
   }
 
@@ -105,6 +119,11 @@ abstract class Solver(val problem: Problem, val params: ParameterManager)
 
   def optimises: Option[Variable] = problem.goal.optimizes
 
+  /**
+    * @return the propagation profile, if enabled
+    */
+  def profiler: Option[Profiler] = None
+
   def obtainOptimConstraint[A <: Constraint](f: => A): A = {
     optimConstraint
       .map {
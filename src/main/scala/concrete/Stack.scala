@@ -1,6 +1,6 @@
 package concrete
 
-import concrete.heuristic.Decision
+import concrete.heuristic.{DeadEnd, Decision}
 
 object Stack {
   def apply(head: Outcome): Stack = Stack(head, Nil, Nil, List(Seq()))
@@ -29,6 +29,16 @@ case class Stack(current: Outcome, leftStack: List[ProblemState], rightStack: Li
     (Stack(updated, remainingStack, rightStack.tail, history), modified)
   }
 
+  /**
+    * Goes back to the state of the given level, without applying pending
+    * right decisions, which are discarded.
+    */
+  def backjump(level: Int): Stack = {
+    val k = size - level
+    require(k > 0 && level >= 0)
+    Stack(leftStack(k - 1), leftStack.drop(k), rightStack.drop(k), decisionHistory.drop(k))
+  }
+
   /**
     *
     * @param filteredState will replace "current" state just before b1 is applied
@@ -44,6 +54,23 @@ case class Stack(current: Outcome, leftStack: List[ProblemState], rightStack: Li
     (Stack(updated, filteredState :: leftStack, b2 :: rightStack, history), modified)
   }
 
+  /**
+    * Gives away the right decision closest to the root, which is replaced by a
+    * dead end.
+    *
+    * @return the updated stack and the decisions leading from the root of the
+    *         stack to the subtree of the right decision, right decision included
+    */
+  def steal: Option[(Stack, Seq[Decision])] = {
+    val k = rightStack.lastIndexWhere(!_.isInstanceOf[DeadEnd])
+    if (k < 0) {
+      None
+    } else {
+      val path = decisionHistory.drop(k + 1).reverse.flatMap(_.reverse) :+ rightStack(k)
+      Some((copy(rightStack = rightStack.updated(k, DeadEnd())), path))
+    }
+  }
+
   def size: Int = leftStack.size
 
   def noRightStack: Boolean = rightStack.isEmpty
@@ -134,13 +134,15 @@ final class TreeSetDomain(val set: TreeSet[Int])
     case _ => head > d.last || last < d.head || !set.exists(d)
   }
 
-  override def |(d: Domain): Domain = {
-    val newSet = set ++ d.view
-    if (newSet.size > size) {
-      IntDomain.ofTreeSet(newSet)
-    } else {
-      this
-    }
+  override def |(d: Domain): Domain = d match {
+    case il: IntervalListDomain => il | this
+    case _ =>
+      val newSet = set ++ d.view
+      if (newSet.size > size) {
+        IntDomain.ofTreeSet(newSet)
+      } else {
+        this
+      }
   }
 
   def |(value: Int): IntDomain = {
@@ -183,6 +185,8 @@ final class TreeSetDomain(val set: TreeSet[Int])
     case id: IntervalDomain => this & id.span
     case s: Singleton => if (contains(s.head)) s else EmptyIntDomain
     case bd: BitVectorDomain => bd.filter(set)
+    case sb: SmallBitDomain => sb.filter(set)
+    case il: IntervalListDomain => filter(il)
     case EmptyIntDomain => EmptyIntDomain
     case b: BooleanDomain => b & this
     case ts: TreeSetDomain => IntDomain.ofTreeSet(set & ts.set)
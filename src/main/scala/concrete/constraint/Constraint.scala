@@ -298,6 +298,14 @@ abstract class Constraint(val scope: Array[Variable])
 
   protected def modVars(modified: BitVector): Iterable[Variable] = modified.view.map(scope)
 
+  /**
+    * Variables whose domains explain the last revision of this constraint,
+    * used to learn nogoods from conflicts (see Explainer). The reduction of
+    * the given variable, or the contradiction if None, must hold whenever
+    * the variables belong to the domains they had before the revision.
+    */
+  def explanation(reduced: Option[Variable]): Iterable[Variable] = scope
+
   def toString(problemState: ProblemState) = s"${this.getClass.getSimpleName}${
     scope.map(v => s"$v ${problemState.dom(v)}").mkString("(", ", ", ")")
   }"
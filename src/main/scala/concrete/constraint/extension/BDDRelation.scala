@@ -2,9 +2,10 @@ package concrete
 package constraint
 package extension
 
+import java.util
+
 import com.typesafe.scalalogging.LazyLogging
 import mdd._
-import java.util
 
 import scala.collection.immutable
 
@@ -57,8 +58,48 @@ final class BDDRelation(val bdd: BDD) extends Relation with LazyLogging {
     }
   }
 
-  override def supported(doms: Array[Domain]): Array[util.HashSet[Int]] = {
-    bdd.supported(doms.asInstanceOf[Array[Set[Int]]])
+  /* Nodes with or without supports, reused by each call to supported */
+  private val gYes = util.Collections.newSetFromMap(new util.IdentityHashMap[BDD, java.lang.Boolean]())
+  private val gNo = util.Collections.newSetFromMap(new util.IdentityHashMap[BDD, java.lang.Boolean]())
+
+  /* Positions from delta are fully supported */
+  private var delta: Int = _
+
+  override def supported(doms: Array[Domain], supports: Supports): Unit = {
+    supports.clear(doms)
+    delta = doms.length
+    gYes.clear()
+    gNo.clear()
+
+    seekSupports(bdd, 0, doms, supports)
+    supports.fillFrom(delta)
+  }
+
+  private def seekSupports(g: BDD, i: Int, doms: Array[Domain], supports: Supports): Boolean = {
+    if (g eq BDDLeaf) {
+      if (i < delta) delta = i
+      true
+    } else if (g eq BDD0) {
+      false
+    } else if (gYes.contains(g)) {
+      true
+    } else if (gNo.contains(g)) {
+      false
+    } else if (doms(i).contains(g.index) && seekSupports(g.child, i + 1, doms, supports)) {
+      if (!(supports.add(i, g.index) && i + 1 == delta)) {
+        seekSupports(g.sibling, i, doms, supports)
+      } else {
+        delta = i
+      }
+      gYes.add(g)
+      true
+    } else if (seekSupports(g.sibling, i, doms, supports)) {
+      gYes.add(g)
+      true
+    } else {
+      gNo.add(g)
+      false
+    }
   }
 
   override def isEmpty: Boolean = bdd.isEmpty
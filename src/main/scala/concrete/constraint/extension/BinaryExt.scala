@@ -38,7 +38,7 @@ object BinaryExt {
     */
   def apply(scope: Array[Variable], matrix2d: Matrix2D): BinaryExt = {
     if (scope.map(_.initDomain.size).max > MINIMUM_SIZE_FOR_LAST) {
-      new BinaryExtR(scope, matrix2d)
+      new BinaryExtBit(scope, matrix2d)
     } else {
       new BinaryExtNR(scope, matrix2d)
     }
@@ -172,3 +172,54 @@ final class BinaryExtNR(scope: Array[Variable], matrix2d: Matrix2D) extends Bina
   }
 }
 
+/**
+  * AC3-bit+rm (Lecoutre and Vion, 2008): supports are searched with word-wise
+  * ANDs between the row of the value in the matrix and the other domain,
+  * starting with the word where a support was last found. Rows and residues
+  * are kept in plain arrays, indexed by value.
+  */
+final class BinaryExtBit(scope: Array[Variable], matrix2d: Matrix2D) extends BinaryExt(scope, matrix2d) {
+
+  private val offsets = Array(x.initDomain.head, y.initDomain.head)
+
+  private val rows: Array[Array[Array[Long]]] = Array.tabulate(2) { p =>
+    Array.tabulate(scope(p).initDomain.last - offsets(p) + 1)(i => matrix2d.getBitVector(p, i + offsets(p)).words)
+  }
+
+  private val residues: Array[Array[Int]] = rows.map(r => new Array[Int](r.length))
+
+  def hasSupport(variablePosition: Int, value: Int, otherBV: BitVector): Boolean = {
+    val index = value - offsets(variablePosition)
+    val row = rows(variablePosition)(index)
+    val other = otherBV.words
+    val length = math.min(row.length, other.length)
+    val residue = residues(variablePosition)(index)
+
+    BinaryExt.checks += 1
+
+    (residue < length && (row(residue) & other(residue)) != 0L) || {
+      var w = 0
+      while (w < length && (row(w) & other(w)) == 0L) {
+        w += 1
+      }
+      BinaryExt.checks += w
+      if (w < length) {
+        residues(variablePosition)(index) = w
+        true
+      } else {
+        false
+      }
+    }
+  }
+
+  override def removeTuple(tuple: Array[Int]): Boolean = {
+    val removed = super.removeTuple(tuple)
+    if (removed) {
+      for (p <- 0 until 2) {
+        rows(p)(tuple(p) - offsets(p)) = matrix2d.getBitVector(p, tuple(p)).words
+      }
+    }
+    removed
+  }
+
+}
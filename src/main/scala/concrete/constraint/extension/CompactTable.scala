@@ -0,0 +1,266 @@
+package concrete.constraint.extension
+
+import java.util
+
+import bitvectors.BitVector
+import concrete._
+import concrete.constraint.{Constraint, StatefulConstraint}
+
+/**
+  * Current tuples of a CompactTable constraint. Words are indexed by their
+  * position in the table bitset, and index lists the non-zero words. States
+  * are persistent: arrays are never modified once the state is shared.
+  *
+  * @param doms domains of the scope when the state was computed, used to
+  *             compute deltas
+  */
+final class CTState(val words: Array[Long], val index: Array[Int], val doms: Array[Domain]) {
+  def limit: Int = index.length
+
+  override def toString: String = s"${index.map(i => java.lang.Long.bitCount(words(i))).sum} tuples"
+}
+
+/**
+  * Compact-Table (Demeulenaere et al., CP 2016). Tuples are numbered, and
+  * the set of tuples that are valid w.r.t. current domains is represented by
+  * a sparse bitset. Each (variable, value) pair comes with the precomputed
+  * bitset of the tuples supporting it.
+  *
+  * When a domain is reduced, current tuples are intersected with the union of
+  * the supports of removed values (delta update), or of remaining values when
+  * there are less of them (reset update). Then, a value remains supported if
+  * its bitset intersects current tuples, which is first checked on the word
+  * where a common tuple was last found (residue).
+  *
+  * @param tuples the allowed tuples, tuples with values outside initial
+  *               domains are discarded
+  */
+final class CompactTable(_scope: Array[Variable], tuples: Array[Array[Int]])
+  extends Constraint(_scope) with StatefulConstraint[CTState] {
+
+  private val table: Array[Array[Int]] = tuples.filter(t => scope.indices.forall(p => scope(p).initDomain.contains(t(p))))
+
+  private val nbWords = (table.length + 63) >> 6
+
+  private val offsets: Array[Int] = scope.map(_.initDomain.head)
+
+  /**
+    * supports(p)(a - offsets(p)) gives the tuples supporting value a of
+    * variable p, null if a has no support
+    */
+  private val supports: Array[Array[Array[Long]]] = Array.tabulate(arity) { p =>
+    val s = new Array[Array[Long]](scope(p).initDomain.last - offsets(p) + 1)
+    for ((t, i) <- table.iterator.zipWithIndex) {
+      val a = t(p) - offsets(p)
+      if (s(a) == null) s(a) = new Array[Long](nbWords)
+      s(a)(i >> 6) |= 1L << i
+    }
+    s
+  }
+
+  /**
+    * Word of the last support found for each value, shared between states
+    */
+  private val residues: Array[Array[Int]] = supports.map(_.map(_ => 0))
+
+  private val mask = new Array[Long](nbWords)
+
+  val simpleEvaluation: Int = math.min(Constraint.NP, scope.count(_.initDomain.size > 1))
+
+  override def init(ps: ProblemState): Outcome = {
+    if (table.isEmpty) {
+      Contradiction(scope)
+    } else {
+      val words = new Array[Long](nbWords)
+      for (i <- table.indices) words(i >> 6) |= 1L << i
+      val initial = new CTState(words, Array.range(0, nbWords), scope.map(_.initDomain))
+      val domains = ps.doms(scope)
+
+      // Remove values without supports, so that all values of the state are
+      // supported
+      updateTable(initial, domains) match {
+        case None => Contradiction(scope)
+        case Some(state) => filterDomains(ps.updateState(this, state), state, domains, -1)
+      }
+    }
+  }
+
+  override def check(t: Array[Int]): Boolean = table.exists(util.Arrays.equals(t, _))
+
+  def advise(ps: ProblemState, event: Event, pos: Int): Int = arity * ps(this).limit
+
+  override def dataSize: Int = table.length * arity
+
+  def revise(ps: ProblemState, mod: BitVector): Outcome = {
+    val domains = ps.doms(scope)
+    val state = ps(this)
+
+    var last = -1
+    var nbModified = 0
+    var p = arity - 1
+    while (p >= 0) {
+      if (domains(p) ne state.doms(p)) {
+        last = p
+        nbModified += 1
+      }
+      p -= 1
+    }
+
+    updateTable(state, domains) match {
+      case None => Contradiction(scope)
+      case Some(newState) =>
+        // If a single variable was modified, its remaining values are all
+        // supported
+        val skip = if (nbModified == 1) last else -1
+        filterDomains(ps.updateState(this, newState), newState, domains, skip).entailIfFree(this)
+    }
+  }
+
+  /**
+    * Removes tuples that are no longer valid from the table.
+    *
+    * @return None if no tuples remain
+    */
+  private def updateTable(state: CTState, domains: Array[Domain]): Option[CTState] = {
+    var words = state.words
+    var index = state.index
+    var changed = false
+    var p = arity - 1
+    while (p >= 0 && index.nonEmpty) {
+      val before = state.doms(p)
+      val dom = domains(p)
+      if (dom ne before) {
+        changed = true
+        clearMask(index)
+        if (before.size - dom.size < dom.size) {
+          // Delta update: remove supports of removed values
+          for (a <- before if !dom.contains(a)) addToMask(index, p, a)
+          reverseMask(index)
+        } else {
+          // Reset update: keep supports of remaining values
+          for (a <- dom) addToMask(index, p, a)
+        }
+        if (words eq state.words) words = words.clone()
+        index = intersectWithMask(words, index)
+      }
+      p -= 1
+    }
+
+    if (index.isEmpty) {
+      None
+    } else if (changed) {
+      Some(new CTState(words, index, domains))
+    } else {
+      Some(state)
+    }
+  }
+
+  private def clearMask(index: Array[Int]): Unit = {
+    var i = index.length - 1
+    while (i >= 0) {
+      mask(index(i)) = 0L
+      i -= 1
+    }
+  }
+
+  private def addToMask(index: Array[Int], p: Int, a: Int): Unit = {
+    val s = supports(p)(a - offsets(p))
+    if (s != null) {
+      var i = index.length - 1
+      while (i >= 0) {
+        val w = index(i)
+        mask(w) |= s(w)
+        i -= 1
+      }
+    }
+  }
+
+  private def reverseMask(index: Array[Int]): Unit = {
+    var i = index.length - 1
+    while (i >= 0) {
+      val w = index(i)
+      mask(w) = ~mask(w)
+      i -= 1
+    }
+  }
+
+  /**
+    * Intersects words with the mask, in place.
+    *
+    * @return non-zero words
+    */
+  private def intersectWithMask(words: Array[Long], index: Array[Int]): Array[Int] = {
+    var limit = 0
+    var i = 0
+    while (i < index.length) {
+      val w = index(i)
+      val n = words(w) & mask(w)
+      words(w) = n
+      if (n != 0L) limit += 1
+      i += 1
+    }
+
+    if (limit == index.length) {
+      index
+    } else {
+      val newIndex = new Array[Int](limit)
+      var j = 0
+      i = 0
+      while (i < index.length) {
+        val w = index(i)
+        if (words(w) != 0L) {
+          newIndex(j) = w
+          j += 1
+        }
+        i += 1
+      }
+      newIndex
+    }
+  }
+
+  private def supported(state: CTState, p: Int, a: Int): Boolean = {
+    val s = supports(p)(a - offsets(p))
+    (s != null) && {
+      val words = state.words
+      val r = residues(p)(a - offsets(p))
+      (words(r) & s(r)) != 0L || {
+        val index = state.index
+        var i = index.length - 1
+        while (i >= 0) {
+          val w = index(i)
+          if ((words(w) & s(w)) != 0L) {
+            residues(p)(a - offsets(p)) = w
+            return true
+          }
+          i -= 1
+        }
+        false
+      }
+    }
+  }
+
+  private def filterDomains(ps: ProblemState, state: CTState, domains: Array[Domain], skip: Int): ProblemState = {
+    var cs = ps
+    var filteredDoms: Array[Domain] = null
+    var p = arity - 1
+    while (p >= 0) {
+      if (p != skip) {
+        val dom = domains(p)
+        val filtered = dom.filter(a => supported(state, p, a))
+        if (filtered.size < dom.size) {
+          cs = cs.updateDomNonEmptyNoCheck(scope(p), filtered)
+          if (filteredDoms == null) filteredDoms = state.doms.clone()
+          filteredDoms(p) = filtered
+        }
+      }
+      p -= 1
+    }
+    if (filteredDoms == null) {
+      cs
+    } else {
+      // Removed values have no support in the table: no delta to process
+      cs.updateState(this, new CTState(state.words, state.index, filteredDoms))
+    }
+  }
+
+}
@@ -1,7 +1,5 @@
 package concrete.constraint.extension
 
-import java.util
-
 import concrete.Domain
 
 import scala.annotation.tailrec
@@ -47,23 +45,27 @@ final class HashTable(val table: Set[ArraySeq[Int]]) extends Relation {
     }
   }
 
-  def supported(domains: Array[Domain]): Array[util.HashSet[Int]] = {
+  def supported(domains: Array[Domain], supports: Supports): Unit = {
     val arity = domains.length
-    val newDomains = Array.fill(arity)(new util.HashSet[Int])
+    supports.clear(domains)
 
     val pos = new MutableList(arity)
     pos.refill()
 
-    for (tuple <- table) {
-      pos.filter { p =>
+    val it = iterator
+    while (it.hasNext && pos.size > 0) {
+      val tuple = it.next()
+      var j = 0
+      while (j < pos.size) {
+        val p = pos(j)
         ReduceableExt.fills += 1
-        newDomains(p).add(tuple(p))
-        newDomains(p).size != domains(p).size
+        if (supports.add(p, tuple(p))) {
+          pos.remove(j)
+        } else {
+          j += 1
+        }
       }
     }
-
-    newDomains
-
   }
 
   override def toString = s"${table.size} tuples"
@@ -0,0 +1,247 @@
+package concrete.constraint.extension
+
+import java.util
+
+import bitvectors.BitVector
+import concrete._
+import concrete.constraint.{Constraint, StatefulConstraint}
+import concrete.util.TrailedIntArray
+import mdd.{MDD, MDD0, MDDLeaf}
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+  * Live edges of an MDD4R constraint, with the out- and in-degrees of
+  * nodes and the number of edges supporting each value.
+  *
+  * @param doms domains of the scope when the state was computed, used to
+  *             compute deltas
+  */
+final class MDD4RState(val counters: TrailedIntArray, val doms: Array[Domain])
+
+/**
+  * Incremental MDD propagator in the style of MDD4R (Perez and Régin,
+  * IJCAI 2014). The diagram is unfolded into layers of nodes and edges.
+  * Removed values kill their edges; nodes that lose all their outgoing edges
+  * (resp. incoming edges) kill their incoming edges (resp. outgoing edges),
+  * so that deletions are propagated both upwards and downwards. Values whose
+  * edges are all dead are removed. Work is thus proportional to the number
+  * of killed edges.
+  *
+  * Edge liveness and counters are kept in a persistent trailed array: a
+  * revision modifies it in place, and former versions are restored on
+  * backtrack.
+  */
+final class MDD4R(_scope: Array[Variable], val mdd: MDDRelation)
+  extends Constraint(_scope) with StatefulConstraint[MDD4RState] {
+
+  val simpleEvaluation: Int = math.min(Constraint.NP, scope.count(_.initDomain.size > 1))
+
+  private val offsets: Array[Int] = scope.map(_.initDomain.head)
+
+  /**
+    * Index of the support counter of value offsets(p) of position p
+    */
+  private val valueBase: Array[Int] = scope.scanLeft(0)((b, v) => b + v.initDomain.last - v.initDomain.head + 1)
+
+  private val edgeTail = new ArrayBuffer[Int]()
+  private val edgeHead = new ArrayBuffer[Int]()
+  private val edgeValue = new ArrayBuffer[Int]()
+  private val edgeLayer = new ArrayBuffer[Int]()
+
+  private val (nbNodes, leaf, layerDoms) = {
+    val ids = new util.IdentityHashMap[MDD, Integer]()
+    ids.put(mdd.mdd, 0)
+    var layer = Seq(mdd.mdd)
+    val doms = new Array[Domain](arity)
+    for (p <- 0 until arity) {
+      val next = new ArrayBuffer[MDD]()
+      val values = new ArrayBuffer[Int]()
+      for (g <- layer; a <- scope(p).initDomain) {
+        val child = g.subMDD(a)
+        if (child ne MDD0) {
+          var id = ids.get(child)
+          if (id == null) {
+            id = ids.size
+            ids.put(child, id)
+            next += child
+          }
+          edgeTail += ids.get(g)
+          edgeHead += id
+          edgeValue += valueBase(p) + a - offsets(p)
+          edgeLayer += p
+          values += a
+        }
+      }
+      doms(p) = IntDomain.ofSeq(values.toSeq: _*)
+      layer = next.toSeq
+    }
+    (ids.size, Option(ids.get(MDDLeaf)).map(_.intValue).getOrElse(-1), doms)
+  }
+
+  private val nbEdges = edgeTail.size
+
+  private val tails = edgeTail.toArray
+  private val heads = edgeHead.toArray
+  private val values = edgeValue.toArray
+  private val layers = edgeLayer.toArray
+
+  private val outEdges: Array[Array[Int]] = group(tails, nbNodes)
+  private val inEdges: Array[Array[Int]] = group(heads, nbNodes)
+
+  /**
+    * Edges of each value, indexed as support counters
+    */
+  private val valueEdges: Array[Array[Int]] = group(values, valueBase(arity))
+
+  private val outBase = nbEdges
+  private val inBase = outBase + nbNodes
+  private val supportBase = inBase + nbNodes
+
+  /**
+    * Positions where some value lost all its edges during current revision
+    */
+  private val lost = new Array[Boolean](arity)
+
+  private def group(keys: Array[Int], nbKeys: Int): Array[Array[Int]] = {
+    val groups = Array.fill(nbKeys)(new ArrayBuffer[Int]())
+    for (e <- keys.indices) groups(keys(e)) += e
+    groups.map(_.toArray)
+  }
+
+  override def init(ps: ProblemState): Outcome = {
+    if (layerDoms.exists(_.isEmpty)) {
+      Contradiction(scope)
+    } else {
+      initCounters(ps)
+    }
+  }
+
+  private def initCounters(ps: ProblemState): Outcome = {
+    val counters = new Array[Int](supportBase + valueBase(arity))
+    util.Arrays.fill(counters, 0, nbEdges, 1)
+    for (n <- 0 until nbNodes) {
+      counters(outBase + n) = outEdges(n).length
+      counters(inBase + n) = inEdges(n).length
+    }
+    for (v <- valueEdges.indices) counters(supportBase + v) = valueEdges(v).length
+
+    val batch = TrailedIntArray(counters).batch()
+
+    // Nodes that do not lead to the leaf
+    for (n <- 0 until nbNodes if n != leaf && batch(outBase + n) == 0) killIn(batch, n)
+
+    util.Arrays.fill(lost, true)
+    update(ps, batch, layerDoms)
+  }
+
+  override def check(t: Array[Int]): Boolean = mdd.contains(t)
+
+  def advise(ps: ProblemState, event: Event, pos: Int): Int = scopeSize(ps)
+
+  override def dataSize: Int = nbEdges
+
+  def revise(ps: ProblemState, mod: BitVector): Outcome = {
+    val state = ps(this)
+    update(ps, state.counters.batch(), state.doms).entailIfFree(this)
+  }
+
+  /**
+    * Kills edges of values removed since given former domains, then filters
+    * values that lost all their edges.
+    */
+  private def update(ps: ProblemState, batch: TrailedIntArray.Batch, former: Array[Domain]): Outcome = {
+    val domains = ps.doms(scope)
+
+    var p = arity - 1
+    while (p >= 0) {
+      val before = former(p)
+      val dom = domains(p)
+      if (dom ne before) {
+        // Kill edges of removed values
+        val last = before.last
+        var a = before.head
+        var continue = true
+        while (continue) {
+          if (!dom.contains(a)) {
+            val edges = valueEdges(valueBase(p) + a - offsets(p))
+            var i = edges.length - 1
+            while (i >= 0) {
+              val e = edges(i)
+              if (batch(e) != 0) kill(batch, e)
+              i -= 1
+            }
+          }
+          if (a == last) continue = false else a = before.next(a)
+        }
+      }
+      p -= 1
+    }
+
+    val counters = batch.commit()
+
+    if (counters(outBase) == 0) {
+      util.Arrays.fill(lost, false)
+      Contradiction(scope)
+    } else {
+      var cs = ps
+      var newDoms = domains
+      p = arity - 1
+      while (p >= 0) {
+        if (lost(p)) {
+          lost(p) = false
+          val dom = domains(p)
+          val base = supportBase + valueBase(p) - offsets(p)
+          val filtered = dom.filter(a => counters(base + a) > 0)
+          if (filtered.size < dom.size) {
+            cs = cs.updateDomNonEmptyNoCheck(scope(p), filtered)
+            if (newDoms eq domains) newDoms = domains.clone()
+            newDoms(p) = filtered
+          }
+        }
+        p -= 1
+      }
+      cs.updateState(this, new MDD4RState(counters, newDoms))
+    }
+  }
+
+  private def kill(batch: TrailedIntArray.Batch, e: Int): Unit = {
+    batch(e) = 0
+
+    val s = supportBase + values(e)
+    val support = batch(s) - 1
+    batch(s) = support
+    if (support == 0) lost(layers(e)) = true
+
+    val t = tails(e)
+    val out = batch(outBase + t) - 1
+    batch(outBase + t) = out
+    if (out == 0 && t != 0) killIn(batch, t)
+
+    val h = heads(e)
+    val in = batch(inBase + h) - 1
+    batch(inBase + h) = in
+    if (in == 0 && h != leaf) killOut(batch, h)
+  }
+
+  private def killIn(batch: TrailedIntArray.Batch, n: Int): Unit = {
+    val edges = inEdges(n)
+    var i = edges.length - 1
+    while (i >= 0) {
+      val e = edges(i)
+      if (batch(e) != 0) kill(batch, e)
+      i -= 1
+    }
+  }
+
+  private def killOut(batch: TrailedIntArray.Batch, n: Int): Unit = {
+    val edges = outEdges(n)
+    var i = edges.length - 1
+    while (i >= 0) {
+      val e = edges(i)
+      if (batch(e) != 0) kill(batch, e)
+      i -= 1
+    }
+  }
+
+}
@@ -1,7 +1,5 @@
 package concrete.constraint.extension
 
-import java.util
-
 import bitvectors.BitVector
 import concrete._
 import concrete.constraint.{Constraint, StatefulConstraint}
@@ -16,6 +14,8 @@ class MDDC(_scope: Array[Variable], val mdd: MDDRelation)
 
   private val prop = mdd.edges.toDouble / scope.map(_.initDomain.size.toDouble).product
 
+  private val supports = new Supports(arity)
+
   override def init(ps: ProblemState): ProblemState = {
     val max = mdd.mdd.fastIdentify() + 1
     ps.updateState(this, new SparseSet(max)) //new SparseSet(max))
@@ -29,7 +29,7 @@ class MDDC(_scope: Array[Variable], val mdd: MDDRelation)
   def revise(ps: ProblemState, mod: BitVector): Outcome = {
 
     val domains = ps.doms(scope) //Array.tabulate(arity)(p => ps.dom(scope(p)))
-    val supported = Array.fill(arity)(new util.HashSet[Int]())
+    supports.clear(domains)
 
     // val unsupported = domains.map(_.to[collection.mutable.Set])
 
@@ -56,8 +56,7 @@ class MDDC(_scope: Array[Variable], val mdd: MDDRelation)
 
           if (seekSupports(gk, i + 1)) {
             res = true
-            supported(i).add(ak)
-            if (i + 1 == delta && supported(i).size == domains(i).size) {
+            if (supports.add(i, ak) && i + 1 == delta) {
               delta = i
               return true
             }
@@ -96,8 +95,8 @@ class MDDC(_scope: Array[Variable], val mdd: MDDRelation)
       var cs: ProblemState =
         if (gNoChange) ps.updateState(this, gNo) else ps
       for (p <- 0 until delta) {
-        if (supported(p).size < domains(p).size) {
-          cs = cs.updateDomNonEmptyNoCheck(scope(p), domains(p).filter(supported(p).contains))
+        if (!supports.full(p)) {
+          cs = cs.updateDomNonEmptyNoCheck(scope(p), supports.filter(p, domains(p)))
         }
       }
       cs.entailIfFree(this)
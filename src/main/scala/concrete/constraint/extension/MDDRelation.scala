@@ -4,7 +4,7 @@ import java.util
 
 import com.typesafe.scalalogging.LazyLogging
 import concrete.Domain
-import mdd.{MDD, SetWithMax}
+import mdd.{MDD, MDD0, MDDLeaf}
 
 object MDDRelation {
   def apply(data: Seq[Array[Int]]): MDDRelation =
@@ -48,11 +48,52 @@ final class MDDRelation(val mdd: MDD) extends Relation with LazyLogging {
     }
   }
 
-  def supported(doms: Array[Domain]): Array[util.HashSet[Int]] = {
-    val newDomains = Array.fill(doms.length)(new util.HashSet[Int]())
-    val l = new SetWithMax(doms.length)
-    mdd.supported(doms.asInstanceOf[Array[Set[Int]]], newDomains, 0, l)
-    newDomains
+  /* Nodes with or without supports, reused by each call to supported */
+  private val gYes = util.Collections.newSetFromMap(new util.IdentityHashMap[MDD, java.lang.Boolean]())
+  private val gNo = util.Collections.newSetFromMap(new util.IdentityHashMap[MDD, java.lang.Boolean]())
+
+  /* Positions from delta are fully supported */
+  private var delta: Int = _
+
+  def supported(doms: Array[Domain], supports: Supports): Unit = {
+    supports.clear(doms)
+    delta = doms.length
+    gYes.clear()
+    gNo.clear()
+
+    seekSupports(mdd, 0, doms, supports)
+    supports.fillFrom(delta)
+  }
+
+  private def seekSupports(g: MDD, i: Int, doms: Array[Domain], supports: Supports): Boolean = {
+    if (g eq MDDLeaf) {
+      if (i < delta) delta = i
+      true
+    } else if (g eq MDD0) {
+      false
+    } else if (gYes.contains(g)) {
+      true
+    } else if (gNo.contains(g)) {
+      false
+    } else {
+      val dom = doms(i)
+      val last = dom.last
+      var res = false
+      var ak = dom.head
+      var continue = true
+      while (continue) {
+        if (seekSupports(g.subMDD(ak), i + 1, doms, supports)) {
+          res = true
+          if (supports.add(i, ak) && i + 1 == delta) {
+            delta = i
+            continue = false
+          }
+        }
+        if (ak == last) continue = false else ak = dom.next(ak)
+      }
+      if (res) gYes.add(g) else gNo.add(g)
+      res
+    }
   }
 
   override def isEmpty: Boolean = mdd.isEmpty
@@ -0,0 +1,191 @@
+package concrete.constraint.extension
+
+import java.nio.channels.FileChannel
+import java.nio.file.{Files, Path, StandardOpenOption}
+import java.nio.{ByteBuffer, ByteOrder, IntBuffer}
+
+import concrete.Domain
+
+import scala.util.Try
+
+object MappedTable {
+
+  /**
+    * Stores the given tuples column by column, outside of the heap.
+    *
+    * @param dir if defined, columns are memory-mapped from temporary files
+    *            created in the given directory, otherwise direct buffers
+    *            are used
+    */
+  def apply(tuples: Iterator[Array[Int]], size: Int, depth: Int, dir: Option[Path]): MappedTable = {
+    val columns = Array.fill(depth)(allocate(size, dir))
+    var i = 0
+    for (t <- tuples) {
+      assert(t.length == depth)
+      var p = depth - 1
+      while (p >= 0) {
+        columns(p).put(i, t(p))
+        p -= 1
+      }
+      i += 1
+    }
+    require(i == size, s"$i tuples were given, $size were expected")
+    new MappedTable(columns, identity(size, dir), size, dir)
+  }
+
+  private def allocate(size: Int, dir: Option[Path]): IntBuffer = {
+    val bytes = 4L * size
+    require(bytes <= Int.MaxValue, s"$size tuples are too many for a column")
+    dir match {
+      case None =>
+        ByteBuffer.allocateDirect(bytes.toInt).order(ByteOrder.nativeOrder).asIntBuffer()
+      case Some(d) =>
+        val file = Files.createTempFile(d, "relation", ".col")
+        val channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+        try {
+          channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes).order(ByteOrder.nativeOrder).asIntBuffer()
+        } finally {
+          channel.close()
+          // The mapping remains valid once the file is unlinked
+          if (Try(Files.delete(file)).isFailure) file.toFile.deleteOnExit()
+        }
+    }
+  }
+
+  private def identity(size: Int, dir: Option[Path]): IntBuffer = {
+    val index = allocate(size, dir)
+    var i = size - 1
+    while (i >= 0) {
+      index.put(i, i)
+      i -= 1
+    }
+    index
+  }
+}
+
+/**
+  * STR-like relation for very large tables. Tuples are stored column by
+  * column in off-heap or memory-mapped buffers, and are never moved. Current
+  * tuples are the first bound entries of the index buffer, which is
+  * reordered in place as STR does with its array of tuples.
+  */
+final class MappedTable private(
+                                 private val columns: Array[IntBuffer],
+                                 private val index: IntBuffer,
+                                 val bound: Int,
+                                 dir: Option[Path]) extends Relation {
+  type Self2 = MappedTable
+
+  private val pos: MutableList = new MutableList(depth)
+
+  /**
+    * Shares tuples, with a new index
+    */
+  def copy: MappedTable = {
+    val newIndex = MappedTable.allocate(index.capacity, dir)
+    var i = bound - 1
+    while (i >= 0) {
+      newIndex.put(i, index.get(i))
+      i -= 1
+    }
+    new MappedTable(columns, newIndex, bound, dir)
+  }
+
+  def depth: Int = columns.length
+
+  def +(t: Seq[Int]) = throw new UnsupportedOperationException
+
+  def -(t: Seq[Int]) = throw new UnsupportedOperationException
+
+  def filterTrie(doms: Array[Domain], modified: List[Int]): MappedTable = {
+    var b = bound
+    var i = b - 1
+    while (i >= 0) {
+      val t = index.get(i)
+      if (!valid(modified, doms, t)) {
+        b -= 1
+        index.put(i, index.get(b))
+        index.put(b, t)
+      }
+      i -= 1
+    }
+    if (b == bound) {
+      this
+    } else {
+      new MappedTable(columns, index, b, dir)
+    }
+  }
+
+  def supported(domains: Array[Domain], supports: Supports): Unit = {
+    supports.clear(domains)
+    pos.refill()
+
+    var i = bound - 1
+    while (i >= 0 && pos.size > 0) {
+      val t = index.get(i)
+      var j = 0
+      while (j < pos.size) {
+        val p = pos(j)
+        ReduceableExt.fills += 1
+        if (supports.add(p, columns(p).get(t))) {
+          pos.remove(j)
+        } else {
+          j += 1
+        }
+      }
+      i -= 1
+    }
+  }
+
+  def contains(t: Array[Int]): Boolean = {
+    var i = bound - 1
+    while (i >= 0) {
+      if (matches(index.get(i), t)) return true
+      i -= 1
+    }
+    false
+  }
+
+  def findSupport(scope: Array[Domain], p: Int, i: Int): Option[Array[Int]] = {
+    var k = bound - 1
+    while (k >= 0) {
+      val t = index.get(k)
+      if (columns(p).get(t) == i && (0 until depth).forall(q => scope(q).contains(columns(q).get(t)))) {
+        return Some(tuple(t))
+      }
+      k -= 1
+    }
+    None
+  }
+
+  def iterator: Iterator[Array[Int]] = Iterator.range(0, bound).map(i => tuple(index.get(i)))
+
+  def edges: Int = bound * depth
+
+  override def size: Int = bound
+
+  def lambda: BigInt = bound
+
+  override def toString: String = s"$bound of ${index.capacity} tuples, off-heap"
+
+  private def tuple(t: Int): Array[Int] = Array.tabulate(depth)(p => columns(p).get(t))
+
+  private def matches(t: Int, tuple: Array[Int]): Boolean = {
+    var p = depth - 1
+    while (p >= 0) {
+      if (columns(p).get(t) != tuple(p)) return false
+      p -= 1
+    }
+    true
+  }
+
+  private def valid(modified: List[Int], doms: Array[Domain], t: Int): Boolean = {
+    var m = modified
+    while (m.nonEmpty) {
+      val p = m.head
+      if (!doms(p).contains(columns(p).get(t))) return false
+      m = m.tail
+    }
+    true
+  }
+}
@@ -44,6 +44,8 @@ final class ReduceableExt(scope: Array[Variable], val relation: Relation)
   //private val newDomains = new Array[Domain](arity)
   private val prop: Double = relation.edges.toDouble / scope.map(_.initDomain.size.toDouble).product
 
+  private val supports = new Supports(arity)
+
   override def init(ps: ProblemState): ProblemState = ps.updateState(this, relation)
 
   def revise(ps: ProblemState, mod: BitVector): Outcome = {
@@ -74,14 +76,15 @@ final class ReduceableExt(scope: Array[Variable], val relation: Relation)
 
       //sizes(domSizes)
 
-      val newDomains = newTrie.supported(domains)
+      newTrie.supported(domains, supports)
 
       var cs: ProblemState = ps.updateState(this, newTrie)
-      for (p <- 0 until arity) {
-        //println(s"$p: ${scope(p)}: ${domains(p)} -> ${newDomains(p)}")
-        if (newDomains(p).size < domains(p).size) {
-          cs = cs.updateDomNonEmptyNoCheck(scope(p), domains(p).filter(newDomains(p).contains)) //(!domains(p).present(_))
+      var p = arity - 1
+      while (p >= 0) {
+        if (!supports.full(p)) {
+          cs = cs.updateDomNonEmptyNoCheck(scope(p), supports.filter(p, domains(p)))
         }
+        p -= 1
       }
       cs.entailIfFree(this)
     }
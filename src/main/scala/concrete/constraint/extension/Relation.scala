@@ -1,14 +1,16 @@
 package concrete.constraint.extension
 
-import java.util
-
 import concrete.Domain
 
 trait Relation extends Iterable[Array[Int]] {
   type Self2 <: Relation
   def filterTrie(doms: Array[Domain], modified: List[Int]): Self2
 
-  def supported(domains: Array[Domain]): Array[util.HashSet[Int]]
+  /**
+    * Collects the values of the given domains that are supported by the
+    * relation. All tuples of the relation must be valid.
+    */
+  def supported(domains: Array[Domain], supports: Supports): Unit
 
   def contains(t: Array[Int]): Boolean
   def +(t: Seq[Int]): Self2
@@ -54,23 +54,25 @@ final class STR(val array: Array[Array[Int]], val bound: Int) extends Relation {
     }
   }
 
-  def supported(domains: Array[Domain]): Array[util.HashSet[Int]] = {
-
-    val newDomains = Array.fill(domains.length)(new util.HashSet[Int]())
+  def supported(domains: Array[Domain], supports: Supports): Unit = {
+    supports.clear(domains)
     pos.refill()
 
     var i = bound - 1
-    while (i >= 0) {
+    while (i >= 0 && pos.size > 0) {
       val tuple = array(i)
-      pos.filter { p =>
+      var j = 0
+      while (j < pos.size) {
+        val p = pos(j)
         ReduceableExt.fills += 1
-        newDomains(p).add(tuple(p))
-        newDomains(p).size != domains(p).size
+        if (supports.add(p, tuple(p))) {
+          pos.remove(j)
+        } else {
+          j += 1
+        }
       }
       i -= 1
     }
-
-    newDomains
   }
 
   override def toString: String = s"$bound of ${array.length} tuples:\n" + iterator.map(_.mkString(" ")).mkString("\n")
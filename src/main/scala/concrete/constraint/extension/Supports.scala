@@ -0,0 +1,93 @@
+package concrete.constraint.extension
+
+import java.util
+
+import concrete.Domain
+
+/**
+  * Supported values of each position of a relation, collected in bit sets
+  * that are reused between revisions. Values are not boxed, and domains are
+  * filtered without intermediate collections.
+  */
+final class Supports(arity: Int) {
+
+  private val offsets = new Array[Int](arity)
+
+  private val bits: Array[Array[Long]] = Array.fill(arity)(new Array[Long](1))
+
+  private val sizes = new Array[Int](arity)
+
+  /**
+    * Size of each domain, the position is fully supported when reached
+    */
+  private val targets = new Array[Int](arity)
+
+  def clear(domains: Array[Domain]): Unit = {
+    var p = arity - 1
+    while (p >= 0) {
+      val d = domains(p)
+      offsets(p) = d.head
+      val words = ((d.last - d.head) >> 6) + 1
+      if (bits(p).length < words) {
+        bits(p) = new Array[Long](math.max(words, (bits(p).length * 3) / 2 + 1))
+      } else {
+        util.Arrays.fill(bits(p), 0, words, 0L)
+      }
+      sizes(p) = 0
+      targets(p) = d.size
+      p -= 1
+    }
+  }
+
+  /**
+    * Adds a value to the supports of a position. The value must belong to
+    * the domain given when clearing.
+    *
+    * @return true iff all values of the position are now supported
+    */
+  def add(p: Int, value: Int): Boolean = {
+    val i = value - offsets(p)
+    assert(i >= 0 && (i >> 6) < bits(p).length, s"$value is out of the domain of position $p")
+    val w = i >> 6
+    val mask = 1L << i
+    val word = bits(p)(w)
+    if ((word & mask) == 0L) {
+      bits(p)(w) = word | mask
+      sizes(p) += 1
+    }
+    sizes(p) == targets(p)
+  }
+
+  def contains(p: Int, value: Int): Boolean = {
+    val i = value - offsets(p)
+    i >= 0 && (i >> 6) < bits(p).length && (bits(p)(i >> 6) & (1L << i)) != 0L
+  }
+
+  def size(p: Int): Int = sizes(p)
+
+  def full(p: Int): Boolean = sizes(p) == targets(p)
+
+  /**
+    * Marks positions from the given one as fully supported, when supports
+    * need not be collected for them.
+    */
+  def fillFrom(from: Int): Unit = {
+    var p = from
+    while (p < arity) {
+      sizes(p) = targets(p)
+      p += 1
+    }
+  }
+
+  /**
+    * @return the supported values of the given domain, that must be the one
+    *         given when clearing
+    */
+  def filter(p: Int, domain: Domain): Domain = {
+    if (full(p)) domain else domain.filter(contains(p, _))
+  }
+
+  override def toString: String = Iterator.range(0, arity)
+    .map(p => s"$p: ${sizes(p)}/${targets(p)}")
+    .mkString("Supports(", ", ", ")")
+}
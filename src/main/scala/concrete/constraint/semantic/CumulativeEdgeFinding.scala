@@ -0,0 +1,337 @@
+package concrete
+package constraint
+package semantic
+
+import bitvectors.BitVector
+import concrete.util.ThetaLambdaTree
+
+/**
+  * Requires that a set of tasks given by start times s, durations d, and
+  * resource requirements h, never require more than a global resource bound
+  * b at any one time.
+  *
+  * Filters start times using a time-table profile, edge-finding (Vilím,
+  * CP 2009) and not-first/not-last rules (Schutt and Wolf, CP 2010).
+  * Overloads and tasks that must end after a set of tasks are detected in
+  * O(n log n), and not-first/not-last tasks in O(n² log n), using a
+  * Theta-Lambda tree. The profile of compulsory parts is kept between
+  * revisions and only the parts of the tasks whose bounds changed are
+  * updated.
+  *
+  * Assumptions:
+  * - forall i, d[i] >= 0 and h[i] >= 0
+  */
+class CumulativeEdgeFinding(s: Array[Variable], d: Array[Variable], h: Array[Variable], b: Variable) extends Constraint(s ++ d ++ h :+ b)
+  with BC with CumulativeChecker with FixPoint {
+
+  private val tree = new ThetaLambdaTree(nbTasks)
+
+  /* Tasks with non-zero energy, indexed from 0 to nb */
+  private val task = new Array[Int](nbTasks)
+  private val est = new Array[Int](nbTasks)
+  private val lct = new Array[Int](nbTasks)
+  private val mirrorEst = new Array[Int](nbTasks)
+  private val mirrorLct = new Array[Int](nbTasks)
+  private val energy = new Array[Long](nbTasks)
+  private val duration = new Array[Int](nbTasks)
+  private val height = new Array[Int](nbTasks)
+  private val bound = new Array[Int](nbTasks)
+  private val mirrorBound = new Array[Int](nbTasks)
+  private val rank = new Array[Int](nbTasks)
+  private val prec = new Array[Int](nbTasks)
+  private val cut = new Array[Int](nbTasks)
+
+  /* Compulsory parts [partStart, partEnd) currently recorded in the profile */
+  private val partStart = new Array[Int](nbTasks)
+  private val partEnd = new Array[Int](nbTasks)
+  private val partHeight = new Array[Int](nbTasks)
+  private var begin: Int = _
+  private var profile: Array[Int] = _
+
+  private val adviseCost = nbTasks * (32 - Integer.numberOfLeadingZeros(nbTasks))
+
+  def nbTasks: Int = s.length
+
+  def advise(problemState: ProblemState, pos: Int): Int = adviseCost
+
+  def init(ps: ProblemState): Outcome = {
+    val startDomains = ps.doms(s)
+    begin = startDomains.map(_.head).min
+    val end = (startDomains lazyZip ps.doms(d)).map((s, d) => s.last + d.last).max
+    profile = new Array[Int](end - begin + 1)
+    java.util.Arrays.fill(partStart, 0)
+    java.util.Arrays.fill(partEnd, 0)
+    java.util.Arrays.fill(partHeight, 0)
+    ps
+  }
+
+  def revise(ps: ProblemState, mod: BitVector): Outcome = fixPoint(ps, shave)
+
+  final def shave(ps: ProblemState): Outcome = {
+    val cap = ps.dom(b).last
+    updateProfile(ps)
+    ps.fold(0 until nbTasks)((ps, i) => timeTable(ps, cap, i))
+      .andThen(edgeFinding(_, cap))
+  }
+
+  /**
+    * Compares the compulsory part of each task with the one recorded in the
+    * profile, and moves it only if it changed. As domains are only read from
+    * the given state, this remains valid after backtracking.
+    */
+  private def updateProfile(ps: ProblemState): Unit = {
+    var i = nbTasks - 1
+    while (i >= 0) {
+      val sDom = ps.dom(s(i))
+      val hlb = ps.dom(h(i)).head
+      var start = sDom.last
+      var end = sDom.head + ps.dom(d(i)).head
+      if (start >= end || hlb == 0) {
+        start = 0
+        end = 0
+      }
+      if (start != partStart(i) || end != partEnd(i) || hlb != partHeight(i)) {
+        var t = partStart(i)
+        while (t < partEnd(i)) {
+          profile(t - begin) -= partHeight(i)
+          t += 1
+        }
+        t = start
+        while (t < end) {
+          profile(t - begin) += hlb
+          t += 1
+        }
+        partStart(i) = start
+        partEnd(i) = end
+        partHeight(i) = hlb
+      }
+      i -= 1
+    }
+  }
+
+  /**
+    * Load of the profile at time t, without the compulsory part of task i
+    */
+  private def load(i: Int, t: Int): Int = {
+    if (partStart(i) <= t && t < partEnd(i)) {
+      profile(t - begin) - partHeight(i)
+    } else {
+      profile(t - begin)
+    }
+  }
+
+  private def timeTable(ps: ProblemState, cap: Int, i: Int): Outcome = {
+    val dlb = ps.dom(d(i)).head
+    val hlb = ps.dom(h(i)).head
+    if (dlb == 0 || hlb == 0) {
+      ps
+    } else {
+      val sDom = ps.dom(s(i))
+
+      // Sweep left
+      var min = sDom.head
+      var k = 0
+      while (k < dlb) {
+        val t = min + k
+        if (load(i, t) + hlb > cap) {
+          if (t >= sDom.last) return Contradiction(s(i))
+          min = sDom.next(t)
+          k = 0
+        } else {
+          k += 1
+        }
+      }
+
+      // Sweep right
+      var max = sDom.last
+      k = dlb - 1
+      while (k >= 0) {
+        val t = max + k
+        if (load(i, t) + hlb > cap) {
+          max = sDom.prev(t - dlb + 1)
+          k = dlb - 1
+        } else {
+          k -= 1
+        }
+      }
+
+      ps.updateDomNonEmpty(s(i), sDom & (min, max))
+    }
+  }
+
+  private def edgeFinding(ps: ProblemState, cap: Int): Outcome = {
+    var nb = 0
+    var i = 0
+    while (i < nbTasks) {
+      val dlb = ps.dom(d(i)).head
+      val hlb = ps.dom(h(i)).head
+      if (dlb > 0 && hlb > 0) {
+        val sDom = ps.dom(s(i))
+        task(nb) = i
+        est(nb) = sDom.head
+        lct(nb) = sDom.last + ps.dom(d(i)).last
+        mirrorEst(nb) = -lct(nb)
+        mirrorLct(nb) = -est(nb)
+        energy(nb) = dlb.toLong * hlb
+        duration(nb) = dlb
+        height(nb) = hlb
+        nb += 1
+      }
+      i += 1
+    }
+
+    if (nb == 0) {
+      ps
+    } else if (!detect(nb, est, lct, cap, bound) || !detect(nb, mirrorEst, mirrorLct, cap, mirrorBound)) {
+      Contradiction(scope)
+    } else {
+      notFirst(nb, est, lct, cap, bound)
+      notFirst(nb, mirrorEst, mirrorLct, cap, mirrorBound)
+
+      var state: Outcome = ps
+      var k = 0
+      while (k < nb && state.isState) {
+        val i = task(k)
+        if (bound(k) > est(k)) {
+          state = state.removeUntil(s(i), bound(k))
+        }
+        if (mirrorBound(k) > mirrorEst(k)) {
+          state = state.andThen(ps => ps.removeAfter(s(i), -mirrorBound(k) - ps.dom(d(i)).head))
+        }
+        k += 1
+      }
+      state
+    }
+  }
+
+  /**
+    * Edge-finding on tasks 0 until nb. Tasks that must end after all tasks of
+    * some set Ω are detected using the Theta-Lambda tree, and their new
+    * earliest start times are computed as
+    * max(est_Ω + ceil(rest(Ω, h_i) / h_i)), over the left cuts of Ω.
+    *
+    * @return false iff an overload is detected
+    */
+  private def detect(nb: Int, est: Array[Int], lct: Array[Int], cap: Long, bound: Array[Int]): Boolean = {
+    val byEst = Array.range(0, nb).sortBy(est(_))
+    val byLct = Array.range(0, nb).sortBy(lct(_))(Ordering.Int.reverse)
+
+    // rank is used to map tasks to leaves then to store position in byLct
+    var k = 0
+    while (k < nb) {
+      rank(byEst(k)) = k
+      k += 1
+    }
+
+    tree.clear()
+    var i = 0
+    while (i < nb) {
+      tree.addTheta(rank(i), cap * est(i) + energy(i), energy(i))
+      prec(i) = -1
+      i += 1
+    }
+
+    k = 0
+    while (k < nb) {
+      val j = byLct(k)
+      val limit = cap * lct(j)
+      if (tree.envelope > limit) {
+        return false
+      }
+      while (tree.envelopeLambda > limit) {
+        val leaf = tree.responsibleEnvelope
+        // byEst(leaf) must end after all tasks of Θ = byLct(k until nb)
+        prec(byEst(leaf)) = k
+        tree.remove(leaf)
+      }
+      tree.addLambda(rank(j), cap * est(j) + energy(j), energy(j))
+      k += 1
+    }
+
+    k = 0
+    while (k < nb) {
+      rank(byLct(k)) = k
+      k += 1
+    }
+
+    i = 0
+    while (i < nb) {
+      bound(i) = est(i)
+      val p = prec(i)
+      if (p >= 0) {
+        val lctOmega = lct(byLct(p))
+        val slack = cap - height(i)
+        var e = 0L
+        var q = nb - 1
+        while (q >= 0) {
+          val l = byEst(q)
+          if (rank(l) >= p) e += energy(l)
+          if (q == 0 || est(byEst(q - 1)) < est(l)) {
+            val rest = e - slack * (lctOmega - est(l))
+            if (rest > 0) {
+              val lb = est(l) + util.Math.ceilDiv(rest, height(i))
+              if (lb > bound(i)) bound(i) = math.min(lb, Int.MaxValue).toInt
+            }
+          }
+          q -= 1
+        }
+      }
+      i += 1
+    }
+
+    true
+  }
+
+  /**
+    * Not-first rule on tasks 0 until nb: if est_Ω ≤ est_i < ect_Ω, with
+    * ect_Ω the smallest ect of Ω, and
+    * e_Ω + h_i·(min(ect_i, lct_Ω) - est_Ω) > C·(lct_Ω - est_Ω), then some
+    * task of Ω must end before i starts. For each task i, candidate tasks
+    * are added to Θ by increasing lct, with envelopes weighted by C - h_i, so
+    * that the rule holds iff the envelope of Θ restricted to the sets
+    * starting before est_i exceeds C·lct_Ω - h_i·min(ect_i, lct_Ω).
+    *
+    * Bounds are only raised, to the smallest ect of Θ when the rule first
+    * holds.
+    */
+  private def notFirst(nb: Int, est: Array[Int], lct: Array[Int], cap: Long, bound: Array[Int]): Unit = {
+    val byEst = Array.range(0, nb).sortBy(est(_))
+    val byLct = Array.range(0, nb).sortBy(lct(_))
+
+    // cut is the last leaf starting at the same time as the task
+    var q = nb - 1
+    while (q >= 0) {
+      val l = byEst(q)
+      rank(l) = q
+      cut(l) = if (q == nb - 1 || est(byEst(q + 1)) > est(l)) q else cut(byEst(q + 1))
+      q -= 1
+    }
+
+    var i = 0
+    while (i < nb) {
+      val weight = cap - height(i)
+      val ect = est(i) + duration(i)
+      var minEct = Int.MaxValue
+      tree.clear()
+      var k = 0
+      while (k < nb) {
+        val j = byLct(k)
+        val ectJ = est(j) + duration(j)
+        if (j != i && ectJ > est(i)) {
+          tree.addTheta(rank(j), weight * est(j) + energy(j), energy(j))
+          minEct = math.min(minEct, ectJ)
+          val lctOmega = lct(j)
+          if (tree.envelopeUntil(cut(i)) > cap * lctOmega - height(i).toLong * math.min(ect, lctOmega)) {
+            if (minEct > bound(i)) bound(i) = minEct
+            k = nb
+          }
+        }
+        k += 1
+      }
+      i += 1
+    }
+  }
+
+  def simpleEvaluation: Int = 3
+
+}
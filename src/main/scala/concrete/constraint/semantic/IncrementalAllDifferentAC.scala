@@ -0,0 +1,294 @@
+package concrete.constraint.semantic
+
+import java.util
+
+import bitvectors.BitVector
+import concrete._
+import concrete.constraint.{Constraint, StatefulConstraint}
+import concrete.util.IntIntMap
+
+/**
+  * Maximum matching of an AllDifferent constraint. varMate gives the index
+  * of the value matched to each variable, valMate the variable matched to
+  * each value index, -1 if unmatched.
+  */
+final class AllDiffMatching(val varMate: Array[Int], val valMate: Array[Int]) {
+  override def toString: String = varMate.mkString("matching(", ", ", ")")
+}
+
+/**
+  * Incremental variant of AllDifferentAC (Régin, AAAI 1994). The matching is
+  * kept in the problem state and is only repaired for variables whose mate
+  * was removed, using BFS augmenting paths. Strongly connected components
+  * are computed by an iterative Tarjan algorithm whose successors are read
+  * directly from the domains and the matching, so that no graph is built.
+  *
+  * Nodes of the graph are the variables (0 until n), the values
+  * (n until n + m) and a sink linking free values to matched values.
+  * Variables point to their unmatched values, values point to their
+  * variable if matched, or to the sink if free.
+  */
+final class IncrementalAllDifferentAC(scope: Array[Variable]) extends Constraint(scope) with AllDiffChecker
+  with StatefulConstraint[AllDiffMatching] {
+
+  private val n = arity
+
+  private val values: Array[Int] = scope.flatMap(_.initDomain).distinct.sorted
+
+  private val m = values.length
+
+  private val index: IntIntMap = values.indices.foldLeft(new IntIntMap(m)) { (map, j) =>
+    map.justPut(values(j), j)
+    map
+  }
+
+  private val sink = n + m
+
+  private val nbNodes = sink + 1
+
+  /* Augmenting paths */
+  private val queue = new Array[Int](n)
+  private val reachedFrom = new Array[Int](m)
+  private val visited = new Array[Int](m)
+  private var stamp = 0
+
+  /* Tarjan */
+  private val order = new Array[Int](nbNodes)
+  private val low = new Array[Int](nbNodes)
+  private val component = new Array[Int](nbNodes)
+  private val onStack = new Array[Boolean](nbNodes)
+  private val stack = new Array[Int](nbNodes)
+  private val callStack = new Array[Int](nbNodes)
+  /**
+    * Last successor visited: value for variables, variable for the sink, 0
+    * or 1 for values
+    */
+  private val cursor = new Array[Int](nbNodes)
+  private val started = new Array[Boolean](nbNodes)
+  private var counter = 0
+  private var sp = 0
+  private var csp = 0
+
+  def this(vars: Variable*) = this(vars.toArray)
+
+  override def init(ps: ProblemState): Outcome =
+    ps.updateState(this, new AllDiffMatching(Array.fill(n)(-1), Array.fill(m)(-1)))
+
+  override def simpleEvaluation: Int = 3
+
+  override def except: Set[Int] = Set()
+
+  override protected def advise(problemState: ProblemState, event: Event, pos: Int): Int = scopeSize(problemState)
+
+  override def revise(ps: ProblemState, modified: BitVector): Outcome = {
+    val doms = ps.doms(scope)
+    val state = ps(this)
+    var varMate = state.varMate
+    var valMate = state.valMate
+
+    // Unmatch variables whose mate was removed
+    var i = modified.nextSetBit(0)
+    while (i >= 0) {
+      val j = varMate(i)
+      if (j >= 0 && !doms(i).contains(values(j))) {
+        if (varMate eq state.varMate) {
+          varMate = varMate.clone()
+          valMate = valMate.clone()
+        }
+        varMate(i) = -1
+        valMate(j) = -1
+      }
+      i = modified.nextSetBit(i + 1)
+    }
+
+    var x = 0
+    var matched = true
+    while (matched && x < n) {
+      if (varMate(x) < 0) {
+        if (varMate eq state.varMate) {
+          varMate = varMate.clone()
+          valMate = valMate.clone()
+        }
+        matched = augment(x, doms, varMate, valMate)
+      }
+      x += 1
+    }
+
+    if (!matched) {
+      Contradiction(scope)
+    } else {
+      findSCC(doms, varMate, valMate)
+
+      var filtered = ps
+      var p = n - 1
+      while (p >= 0) {
+        val dom = doms(p)
+        val mate = varMate(p)
+        val c = component(p)
+        val newDom = dom.filter { k =>
+          val j = index(k)
+          j == mate || component(n + j) == c
+        }
+        filtered = filtered.updateDomNonEmpty(scope(p), newDom)
+        p -= 1
+      }
+
+      if (varMate eq state.varMate) {
+        filtered
+      } else {
+        filtered.updateState(this, new AllDiffMatching(varMate, valMate))
+      }
+    }
+  }
+
+  /**
+    * Searches an augmenting path from the free variable x0 by BFS, and
+    * updates the matching along the path.
+    *
+    * @return false iff no augmenting path exists
+    */
+  private def augment(x0: Int, doms: Array[Domain], varMate: Array[Int], valMate: Array[Int]): Boolean = {
+    stamp += 1
+    if (stamp == Int.MaxValue) {
+      util.Arrays.fill(visited, 0)
+      stamp = 1
+    }
+    var head = 0
+    var tail = 1
+    queue(0) = x0
+    while (head < tail) {
+      val x = queue(head)
+      head += 1
+      val dom = doms(x)
+      val last = dom.last
+      var k = dom.head
+      var continue = true
+      while (continue) {
+        val j = index(k)
+        if (visited(j) != stamp) {
+          visited(j) = stamp
+          reachedFrom(j) = x
+          val y = valMate(j)
+          if (y < 0) {
+            // Flip the path ending at free value j
+            var v = j
+            while (v >= 0) {
+              val z = reachedFrom(v)
+              val previous = varMate(z)
+              varMate(z) = v
+              valMate(v) = z
+              v = previous
+            }
+            return true
+          }
+          queue(tail) = y
+          tail += 1
+        }
+        if (k == last) continue = false else k = dom.next(k)
+      }
+    }
+    false
+  }
+
+  /**
+    * @return next successor of node u, or -1
+    */
+  private def nextSuccessor(u: Int, doms: Array[Domain], varMate: Array[Int], valMate: Array[Int]): Int = {
+    if (u < n) {
+      val dom = doms(u)
+      var k = 0
+      var found = -1
+      var continue = true
+      while (continue) {
+        if (!started(u)) {
+          started(u) = true
+          k = dom.head
+        } else if (cursor(u) == dom.last) {
+          continue = false
+        } else {
+          k = dom.next(cursor(u))
+        }
+        if (continue) {
+          cursor(u) = k
+          val j = index(k)
+          if (j != varMate(u)) {
+            found = n + j
+            continue = false
+          }
+        }
+      }
+      found
+    } else if (u < sink) {
+      if (cursor(u) == 0) {
+        cursor(u) = 1
+        val y = valMate(u - n)
+        if (y >= 0) y else sink
+      } else {
+        -1
+      }
+    } else if (cursor(u) < n) {
+      val x = cursor(u)
+      cursor(u) += 1
+      n + varMate(x)
+    } else {
+      -1
+    }
+  }
+
+  private def visit(u: Int): Unit = {
+    counter += 1
+    order(u) = counter
+    low(u) = counter
+    stack(sp) = u
+    sp += 1
+    onStack(u) = true
+    started(u) = false
+    cursor(u) = 0
+    callStack(csp) = u
+    csp += 1
+  }
+
+  private def findSCC(doms: Array[Domain], varMate: Array[Int], valMate: Array[Int]): Unit = {
+    util.Arrays.fill(order, 0)
+    counter = 0
+    sp = 0
+    csp = 0
+    var nbComponents = 0
+
+    var root = 0
+    while (root < nbNodes) {
+      if (order(root) == 0) {
+        visit(root)
+        while (csp > 0) {
+          val u = callStack(csp - 1)
+          val w = nextSuccessor(u, doms, varMate, valMate)
+          if (w >= 0) {
+            if (order(w) == 0) {
+              visit(w)
+            } else if (onStack(w) && order(w) < low(u)) {
+              low(u) = order(w)
+            }
+          } else {
+            csp -= 1
+            if (csp > 0) {
+              val p = callStack(csp - 1)
+              if (low(u) < low(p)) low(p) = low(u)
+            }
+            if (low(u) == order(u)) {
+              var w = -1
+              while (w != u) {
+                sp -= 1
+                w = stack(sp)
+                onStack(w) = false
+                component(w) = nbComponents
+              }
+              nbComponents += 1
+            }
+          }
+        }
+      }
+      root += 1
+    }
+  }
+
+}
@@ -11,13 +11,68 @@ import cspom.Statistic
 import scala.collection.mutable
 import scala.collection.mutable.ArrayBuffer
 
+object NoGoods {
+
+  /**
+    * Order in which nogoods are removed when the database is reduced
+    */
+  sealed trait Reduction
+
+  /**
+    * Removes long nogoods that were not used recently first
+    */
+  case object Activity extends Reduction
+
+  /**
+    * Removes longest nogoods first, then least recently used ones
+    */
+  case object Size extends Reduction
+
+  def reduction(name: String): Reduction = name.toLowerCase match {
+    case "activity" => Activity
+    case "size" => Size
+    case _ => throw new IllegalArgumentException(s"Unknown nogood reduction $name")
+  }
+
+  /**
+    * Estimated memory used by a literal, used to compute a number of
+    * literals from a memory cap
+    */
+  val literalBytes = 32
+}
+
+/**
+  * Nogoods are watched on two literals. Watches are kept in array-based lists
+  * indexed by position, which is the variable id when the scope is the whole
+  * problem. Negative literals on a single value can only be falsified by an
+  * assignment, so they are watched by (position, value) and only visited
+  * when the variable gets assigned to the value.
+  */
 class NoGoods(scope: Array[Variable]) extends Constraint(scope) {
 
+  import NoGoods._
+
   private val nogoods: mutable.Set[NoGood] = new mutable.HashSet()
-  private val watched1: Array[mutable.Set[NoGood]] = Array.fill(arity)(new mutable.HashSet())
-  private val watched2: Array[mutable.Set[NoGood]] = Array.fill(arity)(new mutable.HashSet())
+  private val watches: Array[Watches] = Array.fill(arity)(new Watches())
+  private val assignWatches: Array[mutable.LongMap[Watches]] = Array.fill(arity)(new mutable.LongMap())
+  private val nbWatches = new Array[Int](arity)
   private val uninitialized = new ArrayBuffer[NoGood]()
+  /**
+    * Maximum number of nogoods, after a reduction
+    */
   var threshold: Int = 200000
+  /**
+    * Maximum number of literals of all nogoods, after a reduction
+    */
+  var maxLiterals: Long = Long.MaxValue
+  var reduction: Reduction = Activity
+  private var pendingLiterals = 0L
+  /**
+    * Nogoods that reduced each position, and nogood that failed during the
+    * last revision, for explanations
+    */
+  private val reasons = new mutable.LongMap[List[NoGood]]()
+  private var conflicting: NoGood = _
   @Statistic
   var nbNogoods = 0
   @Statistic
@@ -26,6 +81,8 @@ class NoGoods(scope: Array[Variable]) extends Constraint(scope) {
   var maxNoGoods = 0
   @Statistic
   var currentNoGoods: Int = 0
+  @Statistic
+  var currentLiterals: Long = 0
 
   var clearNb = 0
 
@@ -38,95 +95,121 @@ class NoGoods(scope: Array[Variable]) extends Constraint(scope) {
 
     val queue = new BitSetQueue(modified.words)
 
+    reasons.clear()
+    conflicting = null
+
 
     logger.trace("Checking uninitialized")
-    state = state.fold(uninitialized) { case (ps, ng) =>
-      ng.findWatch(ps) match {
-        case None =>
-          logger.warn(s"Unsat nogood ${ng.toString(ps)}")
-          return Contradiction(ng.variables)
-        case Some((watch1, witness1)) =>
-          ng.findWatch(ps, from = watch1 + 1) match {
-            case None =>
-              ng.infer(ps, watch1) match {
-                case c: Contradiction =>
-                  logger.warn(s"Unsat nogood after inference ${ng.toString(ps)}")
-                  c
-                case ps: ProblemState =>
-                  queue.offer(ng.literals(watch1).pos)
-                  logger.debug(s"Inferrable nogood ${ng.toString(ps)}")
-                  ps
-              }
-            case Some((watch2, witness2)) =>
-              ng.watch1 = watch1
-              ng.witness1 = witness1
-              ng.watch2 = watch2
-              ng.witness2 = witness2
-              watched1(ng.lit1.pos) += ng
-              watched2(ng.lit2.pos) += ng
-              nogoods += ng
-              nbNogoods += 1
-              currentNoGoods += 1
-              maxNoGoods = math.max(maxNoGoods, nogoods.size)
-              ps
-          }
-      }
+    var i = 0
+    while (i < uninitialized.size && state.isState) {
+      state = initialize(uninitialized(i), state.toState, queue)
+      i += 1
     }
-
-    uninitialized.clear()
+    // Nogoods after a failing one are initialized by next revision
+    uninitialized.remove(0, i)
+    pendingLiterals = uninitialized.map(_.literals.length.toLong).sum
 
     while (state.isState && !queue.isEmpty) {
       val pos = queue.poll()
       logger.trace(s"Modified $pos: ${scope(pos)}")
-      val dom = state.dom(scope(pos))
-      logger.trace(s"Checking watches1")
+      val ps = state.toState
+      val dom = ps.dom(scope(pos))
+      state = visit(watches(pos), dom, ps, queue)
 
-      // BEWARE OF CONCURRENT MODIFICATIONS! Hence the .toSeq.
+      if (state.isState && dom.isAssigned) {
+        for (list <- assignWatches(pos).get(dom.head)) {
+          state = visit(list, dom, state.toState, queue)
+        }
+      }
+    }
 
-      state = state.fold(watched1(pos).toSeq) { case (ps, ng) =>
+    state
+  }
 
-        logger.trace(ng.toString(ps))
-        assert(ng.constraintPos(ng.watch1) == pos)
+  private def initialize(ng: NoGood, ps: ProblemState, queue: BitSetQueue): Outcome = {
+    ng.findWatch(ps) match {
+      case None =>
+        logger.warn(s"Unsat nogood ${ng.toString(ps)}")
+        if (ng.explained) register(ng, ps, -1, 0)
+        conflicting = ng
+        Contradiction(ng.variables)
+      case Some((watch1, witness1)) =>
+        ng.findWatch(ps, from = watch1 + 1) match {
+          case None =>
+            // Learnt nogoods are kept, to propagate again after backtracking
+            if (ng.explained) register(ng, ps, watch1, witness1)
+            ng.infer(ps, watch1) match {
+              case c: Contradiction =>
+                logger.warn(s"Unsat nogood after inference ${ng.toString(ps)}")
+                c
+              case ps: ProblemState =>
+                queue.offer(ng.literals(watch1).pos)
+                logger.debug(s"Inferrable nogood ${ng.toString(ps)}")
+                ps
+            }
+          case Some((watch2, witness2)) =>
+            watch(ng, 0, watch1, witness1)
+            watch(ng, 1, watch2, witness2)
+            added(ng)
+            ps
+        }
+    }
+  }
 
-        val s2 = checkW1(ng, dom, ps)
+  /**
+    * Adds a nogood that has at most one possible literal. The other watch
+    * is on the first impossible literal, which comes from the most recent
+    * level for learnt nogoods.
+    */
+  private def register(ng: NoGood, ps: ProblemState, watch1: Int, witness1: Int): Unit = {
+    // Witnesses of impossible literals are out of current domain
+    def outside(i: Int) = ps.dom(ng.variable(i)).head - 1
 
-        if (s2 ne ps) {
-          upd(ng, ps, s2)
-          s2.andThen { s =>
-            queue.offer(ng.lit2.pos)
-            s
-          }
-        } else {
-          ps
-        }
+    val first = math.max(watch1, 0)
+    val other = if (ng.literals.length == 1) 0 else if (first == 0) 1 else 0
 
-      }
+    watch(ng, 0, first, if (watch1 < 0) outside(first) else witness1)
+    watch(ng, 1, other, outside(other))
+    added(ng)
+  }
 
-      logger.trace(s"Checking watches2")
-      state = state.fold(watched2(pos).toSeq) { case (ps, ng) =>
+  private def added(ng: NoGood): Unit = {
+    nogoods += ng
+    nbNogoods += 1
+    currentNoGoods += 1
+    currentLiterals += ng.literals.length
+    maxNoGoods = math.max(maxNoGoods, nogoods.size)
+  }
+
+  /**
+    * Checks the nogoods of the given watch list. Nogoods whose watch is
+    * moved are removed from the list, and replaced by the last ones, which
+    * have already been checked.
+    */
+  private def visit(list: Watches, dom: Domain, initState: ProblemState, queue: BitSetQueue): Outcome = {
+    var ps = initState
+    var i = list.size - 1
+    while (i >= 0) {
+      if (i < list.size) {
+        val ng = list.nogoods(i)
+        val slot = list.slots(i)
         logger.trace(ng.toString(ps))
-        assert(watched1(ng.lit1.pos).contains(ng))
-        assert(ng.lit2.pos == pos)
 
-        val s2 = checkW2(ng, dom, ps)
+        val s2 = if (slot == 0) checkW1(ng, dom, ps) else checkW2(ng, dom, ps)
 
         if (s2 ne ps) {
           upd(ng, ps, s2)
-          s2.andThen { s =>
-            queue.offer(ng.lit1.pos)
-            // logger.trace(diff(state, s).toString)
-            s
+          if (s2.isState) {
+            queue.offer(if (slot == 0) ng.lit2.pos else ng.lit1.pos)
+            ps = s2.toState
+          } else {
+            return s2
           }
-        } else {
-          ps
         }
-
       }
-
+      i -= 1
     }
-
-
-    state
+    ps
   }
 
   private def upd(ng: NoGood, state: ProblemState, s2: Outcome): Unit = {
@@ -153,10 +236,7 @@ class NoGoods(scope: Array[Variable]) extends Constraint(scope) {
           ng.findWatch(state, ng.watch2) match {
             case None => ng.infer(state, ng.watch2)
             case Some((newWatch, newWitness)) =>
-              watched1(ng.lit1.pos) -= ng
-              ng.watch1 = newWatch
-              ng.witness1 = newWitness
-              watched1(ng.lit1.pos) += ng
+              watch(ng, 0, newWatch, newWitness)
               state
           }
         case Some(newWitness) =>
@@ -177,10 +257,7 @@ class NoGoods(scope: Array[Variable]) extends Constraint(scope) {
           ng.findWatch(state, ng.watch1) match {
             case None => ng.infer(state, ng.watch1)
             case Some((newWatch, newWitness)) =>
-              watched2(ng.lit2.pos) -= ng
-              ng.watch2 = newWatch
-              ng.witness2 = newWitness
-              watched2(ng.lit2.pos) += ng
+              watch(ng, 1, newWatch, newWitness)
               state
           }
         case Some(newWitness) =>
@@ -190,6 +267,48 @@ class NoGoods(scope: Array[Variable]) extends Constraint(scope) {
     }
   }
 
+  /**
+    * Moves a watch of the given nogood to another literal
+    *
+    * @param slot 0 for the first watch, 1 for the second one
+    */
+  private def watch(ng: NoGood, slot: Int, literal: Int, witness: Int): Unit = {
+    unwatch(ng, slot)
+    if (slot == 0) {
+      ng.watch1 = literal
+      ng.witness1 = witness
+    } else {
+      ng.watch2 = literal
+      ng.witness2 = witness
+    }
+    val lit = ng.literals(literal)
+    val list = if (lit.neg && lit.dom.isAssigned) {
+      assignWatches(lit.pos).getOrElseUpdate(lit.dom.head, new Watches())
+    } else {
+      watches(lit.pos)
+    }
+    list.add(ng, slot)
+    nbWatches(lit.pos) += 1
+  }
+
+  private def unwatch(ng: NoGood, slot: Int): Unit = {
+    val list = ng.lists(slot)
+    if (list ne null) {
+      list.remove(ng.indices(slot))
+      ng.lists(slot) = null
+      nbWatches(ng.constraintPos(if (slot == 0) ng.watch1 else ng.watch2)) -= 1
+    }
+  }
+
+  override def explanation(reduced: Option[Variable]): Iterable[Variable] = reduced match {
+    case Some(v) =>
+      position.get(v)
+        .flatMap(p => reasons.get(p.head))
+        .map(_.flatMap(_.variables).distinct)
+        .getOrElse(scope)
+    case None => Option(conflicting).map(_.variables).getOrElse(scope)
+  }
+
   override def init(ps: ProblemState): ProblemState = ps
 
   /**
@@ -203,8 +322,8 @@ class NoGoods(scope: Array[Variable]) extends Constraint(scope) {
       if (ng.watch1 < 0) {
         logger.warn("uninitialized")
       } else {
-        logger.warn(s"watch1: ${watched1(ng.constraintPos(ng.watch1))(ng)}")
-        logger.warn(s"watch2: ${watched2(ng.constraintPos(ng.watch2))(ng)}")
+        logger.warn(s"watch1: ${ng.lists(0) ne null}")
+        logger.warn(s"watch2: ${ng.lists(1) ne null}")
       }
     }
     invalid.isEmpty
@@ -228,12 +347,13 @@ class NoGoods(scope: Array[Variable]) extends Constraint(scope) {
 
     val ng = NoGood((implicand +: ngImplicants).toArray)
     uninitialized += ng
+    pendingLiterals += ng.literals.length
     logger.debug("new nogood " + ng)
     ng
   }
 
   def addNoGood(implicants: Seq[heuristic.Assign], impVariable: Variable, impDom: Domain): Option[NoGood] = {
-    if (uninitialized.size < threshold) {
+    if (uninitialized.size < threshold && currentLiterals + pendingLiterals + implicants.size < maxLiterals) {
       val ngImplicants = implicants.map {
         case Assign(variable, value) =>
           val Array(pos) = position(variable)
@@ -245,6 +365,7 @@ class NoGoods(scope: Array[Variable]) extends Constraint(scope) {
 
       val ng = NoGood((ngImplicants :+ implicand).toArray)
       uninitialized += ng
+      pendingLiterals += ng.literals.length
       logger.debug("new nogood " + ng)
       Some(ng)
     } else {
@@ -252,28 +373,91 @@ class NoGoods(scope: Array[Variable]) extends Constraint(scope) {
     }
   }
 
+  /**
+    * Adds a nogood learnt from a conflict: the given variables cannot all
+    * belong to the given domains. Such nogoods are always added, regardless
+    * of the threshold.
+    */
+  def addExplained(literals: Seq[(Variable, Domain)]): NoGood = {
+    val ng = NoGood(literals.map {
+      case (variable, dom) =>
+        val Array(pos) = position(variable)
+        Alternative(pos, neg = true, dom)
+    }.toArray)
+    ng.explained = true
+    uninitialized += ng
+    pendingLiterals += ng.literals.length
+    logger.debug("new explained nogood " + ng)
+    ng
+  }
+
+  /**
+    * Reduces the database to at most threshold nogoods and maxLiterals
+    * literals, according to the reduction policy. Called at each restart.
+    */
   def clearInactive(): Unit = {
     clearNb += 1
-    // Remove old, long nogoods. Sort them with "worst" nogoods first.
-    val sorted = nogoods.toSeq.sortBy(ng => ng.literals.length * (ng.activity - clearNb))
+    // Sort nogoods with "worst" nogoods first.
+    val sorted = reduction match {
+      case Activity => nogoods.toSeq.sortBy(ng => ng.literals.length * (ng.activity - clearNb))
+      case Size => nogoods.toSeq.sortBy(ng => (-ng.literals.length, ng.activity))
+    }
 
-    // threshold *= 1.1
-    for (ng <- sorted.take(nogoods.size - threshold)) {
+    val it = sorted.iterator
+    while (it.hasNext && (currentNoGoods > threshold || currentLiterals > maxLiterals)) {
+      val ng = it.next()
       logger.debug(s"nogood removed : length ${ng.literals.length}, age ${clearNb - ng.activity}")
       nogoods -= ng
       currentNoGoods -= 1
-      watched1(ng.constraintPos(ng.watch1)) -= ng
-      watched2(ng.constraintPos(ng.watch2)) -= ng
+      currentLiterals -= ng.literals.length
+      unwatch(ng, 0)
+      unwatch(ng, 1)
     }
 
   }
 
 
   override protected def advise(problemState: ProblemState, event: Event, pos: Int): Int = {
-    arity * (watched1(pos).size + watched2(pos).size + uninitialized.size)
+    arity * (nbWatches(pos) + uninitialized.size)
   }
 
 
+  /**
+    * Array-based list of watches. Each nogood knows its index in the lists
+    * of its two watches, so that watches are removed in constant time.
+    */
+  final class Watches private[NoGoods]() {
+    private[NoGoods] var nogoods = new Array[NoGood](4)
+    /**
+      * Watch of each nogood, 0 for the first one, 1 for the second one
+      */
+    private[NoGoods] var slots = new Array[Int](4)
+    private[NoGoods] var size = 0
+
+    def add(ng: NoGood, slot: Int): Unit = {
+      if (size == nogoods.length) {
+        nogoods = java.util.Arrays.copyOf(nogoods, size * 2)
+        slots = java.util.Arrays.copyOf(slots, size * 2)
+      }
+      nogoods(size) = ng
+      slots(size) = slot
+      ng.lists(slot) = this
+      ng.indices(slot) = size
+      size += 1
+    }
+
+    def remove(i: Int): Unit = {
+      size -= 1
+      if (i < size) {
+        val moved = nogoods(size)
+        nogoods(i) = moved
+        slots(i) = slots(size)
+        moved.indices(slots(i)) = i
+      }
+      nogoods(size) = null
+    }
+  }
+
   case class Alternative(pos: Int, neg: Boolean, dom: Domain) {
     override def toString: String = s"${scope(pos)} ${if (neg) "notin" else "in"} $dom"
 
@@ -284,12 +468,19 @@ class NoGoods(scope: Array[Variable]) extends Constraint(scope) {
 
     var activity: Int = clearNb
 
+    /** Learnt from a conflict, see addExplained */
+    var explained = false
+
     /** watch < 0 means that all variables must be watched */
     var watch1: Int = -1
     var watch2: Int = -1
     var witness1: Int = _
     var witness2: Int = _
 
+    /** Watch lists of each watch, and index in the list */
+    private[NoGoods] val lists = new Array[Watches](2)
+    private[NoGoods] val indices = new Array[Int](2)
+
     override def toString: String = literals.mkString("(", ", ", ")") + s" - w1 = $watch1 ($witness1) - w2 = $watch2 ($witness2) - a = $activity"
 
     def toString(ps: ProblemState): String = literals.map(_.toString(ps)).mkString("(", ", ", ")") + s" - w1 = $watch1/${lit1.pos} ($witness1) - w2 = $watch2/${lit2.pos} ($witness2) - a = $activity"
@@ -350,16 +541,23 @@ class NoGoods(scope: Array[Variable]) extends Constraint(scope) {
 
     def infer(ps: ProblemState, pos: Int): Outcome = {
       if (pos < 0) {
+        conflicting = this
         Contradiction(variables)
       } else {
         val lit = literals(pos)
-        if (lit.neg) {
+        val inferred = if (lit.neg) {
           // var notin dom is mandatory, so remove all values from dom
           ps.filterDom(scope(lit.pos))(v => !lit.dom.contains(v))
         } else {
           // var in dom is mandatory
           ps.intersectDom(scope(lit.pos), lit.dom)
         }
+        if (inferred.isState) {
+          reasons(lit.pos) = this :: reasons.getOrElse(lit.pos, Nil)
+        } else {
+          conflicting = this
+        }
+        inferred
       }
     }
 
@@ -4,7 +4,7 @@ import com.typesafe.scalalogging.LazyLogging
 import concrete._
 import concrete.constraint.{AdviseCount, Constraint, StatefulConstraint}
 import concrete.heuristic.ContradictionEvent
-import concrete.heuristic.revision.{Eval, Key}
+import concrete.heuristic.revision.{Eval, Key, MeasuredKey}
 import concrete.priorityqueues.{PriorityQueue, QuickFifos}
 import cspom.{Statistic, StatisticsManager}
 
@@ -28,7 +28,13 @@ final class ACC(val problem: Problem, params: ParameterManager) extends Filter w
   private val keyType: Class[_ <: Key[Constraint]] =
     params.classInPackage("ac3c.key", "concrete.heuristic.revision", classOf[Eval])
   private val key = keyType.getConstructor().newInstance()
+  private val measuredKey: Option[MeasuredKey[Constraint]] = key match {
+    case k: MeasuredKey[Constraint] => Some(k)
+    case _ => None
+  }
   private val queue = queueType.getConstructor().newInstance()
+  override val profiler: Option[Profiler] = if (params.contains("ac3c.profile")) Some(new Profiler) else None
+  private val timed = measuredKey.isDefined || profiler.isDefined
 
   //  var active = Set[Int]()
   private val advises = new AdviseCount()
@@ -136,6 +142,12 @@ final class ACC(val problem: Problem, params: ParameterManager) extends Filter w
     if (a >= 0) queue.offer(c, key.getKey(c, states, a))
   }
 
+  private def removed(constraint: Constraint, before: ProblemState, after: Outcome): Int = after match {
+    case _: Contradiction => constraint.scopeSize(before)
+    case ps: ProblemState =>
+      ps.recentUpdates.foldLeft(0) { case (r, (i, d)) => r + before.dom(i).size - d.size }
+  }
+
   @annotation.tailrec
   private def reduce(s: ProblemState): Outcome = {
     if (queue.isEmpty) {
@@ -150,11 +162,30 @@ final class ACC(val problem: Problem, params: ParameterManager) extends Filter w
 
       revisions += 1
 
-      constraint.revise(s.clearRecent) match {
+      val start = if (timed) System.nanoTime() else 0L
+
+      val revised = constraint.revise(s.clearRecent)
+
+      if (timed) {
+        val nanos = System.nanoTime() - start
+        for (k <- measuredKey) {
+          k.revised(constraint, nanos, removed(constraint, s, revised))
+        }
+        for (p <- profiler) {
+          revised match {
+            case _: Contradiction => p.record(constraint, nanos, 0, failure = true)
+            case ps: ProblemState => p.record(constraint, nanos, ps.recentUpdates.size, failure = false)
+          }
+        }
+      }
+
+      revised match {
         case c: Contradiction =>
 
           logger.debug(s"${constraint.id}.${constraint.weight}. ${constraint.toString(s)} -> Contradiction")
 
+          explainer.foreach(_.failed(constraint, s))
+
           val nc = if (c.from.isEmpty) {
             c dueTo ((constraint, constraint.scope))
           } else {
@@ -181,10 +212,17 @@ final class ACC(val problem: Problem, params: ParameterManager) extends Filter w
             // to reach a fixpoint beforehand
             //assert(constraint.controlRevision(newState), s"Revision control failed for ${constraint.toString(s)}")
 
-            for ((i, after) <- newState.recentUpdates) {
+            explainer.foreach(_.revised(constraint, s, newState))
+
+            // Read all former domains first: with trailed states, switching
+            // between s and newState unwinds and replays the trail
+            val events = newState.recentUpdates.map { case (i, after) =>
               val before = s.dom(i)
               assert(after.size < before.size)
-              val e = InsideRemoval(before, after)
+              i -> InsideRemoval(before, after)
+            }
+
+            for ((i, e) <- events) {
               updateQueue(problem.variables(i), e, constraint, newState)
             }
 
@@ -30,10 +30,21 @@ import concrete.heuristic.HeuristicListener
 trait Filter {
   var contradictionListeners: Seq[HeuristicListener] = Seq()
 
+  /**
+    * Records reductions and contradictions with their explanations, if
+    * defined
+    */
+  var explainer: Option[Explainer] = None
+
   def addConstraint[A <: Constraint](c: A): A
 
   def problem: Problem
 
+  /**
+    * @return the propagation profile, if enabled
+    */
+  def profiler: Option[Profiler] = None
+
   /**
     * @return false iff an inconsistency has been detected
     */
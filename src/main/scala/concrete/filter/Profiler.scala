@@ -0,0 +1,132 @@
+package concrete.filter
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path}
+import java.util
+
+import concrete.constraint.Constraint
+import concrete.util.Histogram
+import cspom.Statistic
+
+import scala.collection.mutable
+
+object Profiler {
+
+  final class Entry(val name: String) {
+    val time = new Histogram
+    var reductions = 0L
+    var failures = 0L
+
+    def record(nanos: Long, red: Int, failure: Boolean): Unit = {
+      time.record(nanos)
+      reductions += red
+      if (failure) failures += 1
+    }
+
+    def toJSON(stb: StringBuilder): StringBuilder = {
+      stb.append("\"revisions\": ").append(time.count)
+        .append(", \"time\": ").append(time.total)
+        .append(", \"p50\": ").append(time.percentile(50))
+        .append(", \"p90\": ").append(time.percentile(90))
+        .append(", \"p99\": ").append(time.percentile(99))
+        .append(", \"max\": ").append(time.max)
+        .append(", \"reductions\": ").append(reductions)
+        .append(", \"failures\": ").append(failures)
+    }
+  }
+
+  def quote(s: String): String = {
+    val stb = new StringBuilder("\"")
+    s.foreach {
+      case '"' => stb.append("\\\"")
+      case '\\' => stb.append("\\\\")
+      case c if c < ' ' => stb.append(f"\\u${c.toInt}%04x")
+      case c => stb.append(c)
+    }
+    stb.append('"').toString
+  }
+
+}
+
+/**
+  * Records, for each constraint class and each constraint, the number of
+  * revisions, a histogram of revision wall times (in ns), the number of domain
+  * reductions and the number of failures. Enabled in ACC by the ac3c.profile
+  * parameter, the profile can be written as JSON to the file given by the
+  * ac3c.profile parameter at the end of a run.
+  */
+final class Profiler {
+
+  import Profiler._
+
+  @Statistic
+  var revisions = 0L
+  @Statistic
+  var time = 0L
+  @Statistic
+  var reductions = 0L
+  @Statistic
+  var failures = 0L
+
+  private val classes = new mutable.HashMap[Class[_], Entry]()
+
+  private var constraints = new Array[Entry](16)
+
+  private def ensureCapacity(minCapacity: Int): Unit = {
+    val oldCapacity = constraints.length
+    if (minCapacity > oldCapacity) {
+      constraints = util.Arrays.copyOf(constraints, math.max(minCapacity, (oldCapacity * 3) / 2 + 1))
+    }
+  }
+
+  /**
+    * @param nanos      wall time of the revision
+    * @param reductions number of domains reduced by the revision
+    * @param failure    whether the revision detected a contradiction
+    */
+  def record(c: Constraint, nanos: Long, reductions: Int, failure: Boolean): Unit = {
+    revisions += 1
+    time += nanos
+    this.reductions += reductions
+    if (failure) failures += 1
+
+    val id = c.id
+    ensureCapacity(id + 1)
+    var entry = constraints(id)
+    if (entry eq null) {
+      entry = new Entry(c.toString)
+      constraints(id) = entry
+    }
+    entry.record(nanos, reductions, failure)
+
+    classes.getOrElseUpdate(c.getClass, new Entry(c.getClass.getName)).record(nanos, reductions, failure)
+  }
+
+  def byClass: Seq[Entry] = classes.values.toSeq.sortBy(-_.time.total)
+
+  /**
+    * Classes and constraints are sorted by decreasing total time
+    */
+  def toJSON: String = {
+    val stb = new StringBuilder("{\n  \"classes\": [")
+    for ((e, i) <- byClass.zipWithIndex) {
+      stb.append(if (i > 0) ",\n    " else "\n    ").append("{\"class\": ").append(quote(e.name)).append(", ")
+      e.toJSON(stb).append('}')
+    }
+    stb.append("\n  ],\n  \"constraints\": [")
+    val revised = constraints.indices.filter(i => constraints(i) ne null).sortBy(i => -constraints(i).time.total)
+    for ((id, i) <- revised.zipWithIndex) {
+      val e = constraints(id)
+      stb.append(if (i > 0) ",\n    " else "\n    ").append("{\"id\": ").append(id)
+        .append(", \"constraint\": ").append(quote(e.name)).append(", ")
+      e.toJSON(stb).append('}')
+    }
+    stb.append("\n  ]\n}\n").toString
+  }
+
+  def writeJSON(path: Path): Unit = {
+    Files.write(path, toJSON.getBytes(StandardCharsets.UTF_8))
+  }
+
+  override def toString: String = byClass.map(e => s"${e.name}: ${e.time}, ${e.reductions} reductions, ${e.failures} failures").mkString("\n")
+}
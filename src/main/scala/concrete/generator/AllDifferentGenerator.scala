@@ -2,7 +2,7 @@ package concrete
 package generator
 
 import concrete.constraint.Constraint
-import concrete.constraint.semantic.{AllDifferent2C, AllDifferentAC, AllDifferentBC, Neq}
+import concrete.constraint.semantic.{AllDifferent2C, AllDifferentAC, AllDifferentBC, IncrementalAllDifferentAC, Neq}
 import concrete.generator.Generator.cspom2concreteVar
 import cspom.CSPOMConstraint
 
@@ -30,7 +30,11 @@ final class AllDifferentGenerator(val pg: ProblemGenerator) extends Generator {
           val allValues = v.flatMap(_.initDomain).distinct
 
           val hc = if (allValues.size <= 1.5 * v.size) {
-            new AllDifferentAC(v.toArray)
+            if (pg.pm.contains("alldifferent.incremental")) {
+              new IncrementalAllDifferentAC(v.toArray)
+            } else {
+              new AllDifferentAC(v.toArray)
+            }
           } else {
             new AllDifferentBC(v.toArray)
           }
@@ -1,7 +1,7 @@
 package concrete.generator
 
 import com.typesafe.scalalogging.LazyLogging
-import concrete.constraint.semantic.{Cumulative, CumulativeEnergy}
+import concrete.constraint.semantic.{Cumulative, CumulativeEdgeFinding, CumulativeEnergy}
 import concrete.generator.Generator.{cspom2concrete1D, cspom2concreteSeq}
 import cspom.CSPOMConstraint
 
@@ -32,7 +32,11 @@ final class CumulativeGenerator(pg: ProblemGenerator) extends Generator with Laz
       new CumulativeEnergy(svars, dVars, rVars, bVar)
 
 
-    Seq(profile, energy)
+    if (pg.pm.contains("cumulative.edgefinding")) {
+      Seq(profile, energy, new CumulativeEdgeFinding(svars, dVars, rVars, bVar))
+    } else {
+      Seq(profile, energy)
+    }
 
   }
 
@@ -1,6 +1,8 @@
 package concrete
 package generator
 
+import java.nio.file.Paths
+
 import com.typesafe.scalalogging.LazyLogging
 import concrete.constraint.Constraint
 import concrete.constraint.extension._
@@ -13,6 +15,9 @@ class ExtensionGenerator(pg: ProblemGenerator) extends Generator with LazyLoggin
   private val algorithm = params.getOrElse("relationAlgorithm", "BDDC")
   private val structure = params.getOrElse("relationStructure", "BDD")
   private val relationCache = new IdMap[MDD, Relation]()
+  private val interner = new RelationInterner(
+    params.get[String]("relation.cacheDir").map(Paths.get(_)),
+    params.getOrElse[Int]("relation.internMax", 1000000))
 
   def params: ParameterManager = pg.pm
 
@@ -53,6 +58,10 @@ class ExtensionGenerator(pg: ProblemGenerator) extends Generator with LazyLoggin
           matrix.setAll(mdd.view.map(a => a.toArray), !init)
           BinaryExt(scope, matrix)
 
+        case _ if !init && algorithm == "CompactTable" =>
+          // Positive table constraint, tuples are enumerated
+          new CompactTable(scope, mdd.toArrayArray)
+
         case _ if !init && algorithm != "General" =>
           // Positive table constraint
           val relation = generateRelation(mdd)
@@ -78,6 +87,9 @@ class ExtensionGenerator(pg: ProblemGenerator) extends Generator with LazyLoggin
       case "MDDC" =>
         new MDDC(scope, relation.asInstanceOf[MDDRelation])
 
+      case "MDD4R" =>
+        new MDD4R(scope, relation.asInstanceOf[MDDRelation])
+
       case "BDDC" =>
         new BDDC(scope, relation.asInstanceOf[BDDRelation])
 
@@ -91,12 +103,20 @@ class ExtensionGenerator(pg: ProblemGenerator) extends Generator with LazyLoggin
 
   private def generateRelation(relation: MDD): Relation = {
     structure match {
-      case "MDD" => relationCache.getOrElseUpdate(relation, new MDDRelation(relation))
-      case "BDD" => relationCache.getOrElseUpdate(relation, new BDDRelation(BDD(relation).reduce()))
+      case "MDD" => interner(relation)(new MDDRelation(_))
+      case "BDD" => interner(relation)(m => new BDDRelation(BDD(m).reduce()))
       case "STR" => relationCache.getOrElseUpdate(relation, STR(relation.toArrayArray)).asInstanceOf[STR].copy
       case "HashTable" => HashTable(relation.toArrayArray)
+      case "Mapped" => relationCache.getOrElseUpdate(relation, mapped(relation)).asInstanceOf[MappedTable].copy
     }
   }
 
+  private def mapped(relation: MDD): MappedTable = {
+    val dir = params.get[String]("relation.mapDir").map(Paths.get(_))
+    val lambda = relation.lambda()
+    require(lambda.isValidInt, s"$lambda tuples are too many for a mapped table")
+    MappedTable(relation.iterator.map(_.toArray), lambda.toInt, relation.depth().get, dir)
+  }
+
 }
 
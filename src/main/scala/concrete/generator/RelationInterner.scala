@@ -0,0 +1,213 @@
+package concrete
+package generator
+
+import java.io._
+import java.nio.file.{Files, Path, StandardCopyOption}
+import java.util
+
+import com.typesafe.scalalogging.LazyLogging
+import concrete.constraint.extension.Relation
+import mdd.{IdMap, MDD, MDD0, MDDLeaf}
+
+import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
+import scala.util.control.NonFatal
+
+object RelationInterner {
+
+  /**
+    * Content hash of a tuple set
+    */
+  final case class Key(depth: Int, lambda: BigInt, h1: Long, h2: Long) {
+    def fileName: String = f"$depth%d-$h1%016x$h2%016x.mdd"
+  }
+
+  private final val Magic = 0x4d444431
+
+  private def mix(z0: Long): Long = {
+    var z = z0 * 0x9e3779b97f4a7c15L
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL
+    z ^ (z >>> 31)
+  }
+
+  /**
+    * Hashes tuples independently of the order of enumeration, so that
+    * diagrams with different structures but the same tuples get the same key.
+    *
+    * @return the key and the sorted values of each position
+    */
+  def hash(relation: MDD): (Key, Array[Array[Int]]) = {
+    var depth = -1
+    var values: Array[mutable.Set[Int]] = null
+    var lambda = 0L
+    var h1 = 0L
+    var h2 = 0L
+    for (t <- relation.iterator) {
+      if (depth < 0) {
+        depth = t.length
+        values = Array.fill(depth)(new mutable.HashSet[Int]())
+      }
+      var t1 = 0x51ed27L
+      var t2 = 0x2545f4914f6cdd1dL
+      var p = 0
+      for (v <- t) {
+        t1 = mix(t1 ^ v)
+        t2 = mix(t2 + (v.toLong << 32 | p))
+        values(p) += v
+        p += 1
+      }
+      h1 += t1
+      h2 += t2
+      lambda += 1
+    }
+    val sorted = Array.tabulate(math.max(depth, 0))(p => values(p).toArray.sorted)
+    (Key(depth, lambda, h1, h2), sorted)
+  }
+
+  /**
+    * Writes the nodes of the diagram in breadth-first order, each node
+    * followed by its number of children and its (value, child) pairs. The
+    * leaf is -1.
+    */
+  def write(relation: MDD, key: Key, values: Array[Array[Int]], out: DataOutputStream): Unit = {
+    val ids = new util.IdentityHashMap[MDD, Integer]()
+    val nodes = ArrayBuffer(relation)
+    val depths = ArrayBuffer(0)
+    ids.put(relation, 0)
+
+    out.writeInt(Magic)
+    out.writeInt(key.depth)
+    out.writeLong(key.lambda.toLong)
+
+    var i = 0
+    while (i < nodes.size) {
+      val g = nodes(i)
+      val children = values(depths(i)).toSeq.map(a => a -> g.subMDD(a)).filter(_._2 ne MDD0)
+      out.writeInt(children.size)
+      for ((a, child) <- children) {
+        out.writeInt(a)
+        if (child eq MDDLeaf) {
+          out.writeInt(-1)
+        } else {
+          var id = ids.get(child)
+          if (id == null) {
+            id = nodes.size
+            ids.put(child, id)
+            nodes += child
+            depths += depths(i) + 1
+          }
+          out.writeInt(id)
+        }
+      }
+      i += 1
+    }
+  }
+
+  def read(in: DataInputStream): MDD = {
+    require(in.readInt() == Magic, "Not a relation file")
+    in.readInt()
+    in.readLong()
+
+    val nodes = new ArrayBuffer[Seq[(Int, Int)]]()
+    var expected = 1
+    while (nodes.size < expected) {
+      val children = Seq.fill(in.readInt()) {
+        val a = in.readInt()
+        val id = in.readInt()
+        expected = math.max(expected, id + 1)
+        (a, id)
+      }
+      nodes += children
+    }
+
+    // Children have greater ids than their parents
+    val built = new Array[MDD](nodes.size)
+    for (n <- nodes.indices.reverse) {
+      built(n) = MDD.fromTrie(nodes(n).map {
+        case (a, -1) => a -> MDDLeaf
+        case (a, id) => a -> built(id)
+      })
+    }
+    built(0)
+  }
+
+}
+
+/**
+  * Shares compiled relations between extension constraints that define the
+  * same tuples, even if given as distinct diagrams. Relations are identified
+  * by a hash of their tuples. If a cache directory is given, reduced
+  * diagrams are also stored there, and read back instead of being reduced
+  * again by later runs.
+  *
+  * @param maxTuples relations with more tuples are not hashed nor reduced,
+  *                  and are only shared by identity
+  */
+final class RelationInterner(cacheDir: Option[Path], maxTuples: BigInt) extends LazyLogging {
+
+  import RelationInterner._
+
+  private val byIdentity = new IdMap[MDD, Relation]()
+
+  private val byContent = new mutable.HashMap[Key, Relation]()
+
+  /**
+    * @param build builds the relation from a diagram, which is reduced when
+    *              the relation is interned
+    */
+  def apply(relation: MDD)(build: MDD => Relation): Relation = {
+    byIdentity.getOrElseUpdate(relation, {
+      if (relation.lambda() > maxTuples) {
+        build(relation)
+      } else {
+        val (key, values) = hash(relation)
+        byContent.getOrElseUpdate(key, {
+          val reduced = load(key).getOrElse {
+            val r = relation.reduce()
+            cacheDir.foreach(store(_, key, values, r))
+            r
+          }
+          build(reduced)
+        })
+      }
+    })
+  }
+
+  private def load(key: Key): Option[MDD] = cacheDir
+    .map(_.resolve(key.fileName))
+    .filter(Files.isReadable(_))
+    .flatMap { file =>
+      try {
+        val in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))
+        try {
+          logger.info(s"Loading relation from $file")
+          Some(read(in)).filter(_.lambda() == key.lambda)
+        } finally {
+          in.close()
+        }
+      } catch {
+        case NonFatal(e) =>
+          logger.warn(s"Could not load relation from $file", e)
+          None
+      }
+    }
+
+  private def store(dir: Path, key: Key, values: Array[Array[Int]], relation: MDD): Unit = {
+    try {
+      Files.createDirectories(dir)
+      val tmp = Files.createTempFile(dir, "relation", ".tmp")
+      val out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))
+      try {
+        write(relation, key, values, out)
+      } finally {
+        out.close()
+      }
+      // Concurrent runs may store the same relation
+      Files.move(tmp, dir.resolve(key.fileName), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+    } catch {
+      case NonFatal(e) => logger.warn(s"Could not store relation in $dir", e)
+    }
+  }
+
+}
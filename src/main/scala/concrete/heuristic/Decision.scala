@@ -5,6 +5,11 @@ sealed trait Decision {
   def apply(ps: ProblemState): (Outcome, Seq[(Variable, Event)])
 
   def toString(ps: ProblemState): String
+
+  /**
+    * @return the same decision on another instance of the problem
+    */
+  def translate(problem: Problem): Decision
 }
 
 case class Assign(variable: Variable, value: Int) extends Decision {
@@ -13,6 +18,8 @@ case class Assign(variable: Variable, value: Int) extends Decision {
   def toString(ps: ProblemState): String = s"${variable.toString(ps)} = $value"
 
   def apply(ps: ProblemState): (Outcome, Seq[(Variable, Event)]) = (ps.assign(variable, value), Seq((variable, Assignment)))
+
+  def translate(problem: Problem): Decision = Assign(problem.variable(variable.name), value)
 }
 
 case class Remove(variable: Variable, value: Int) extends Decision {
@@ -27,6 +34,8 @@ case class Remove(variable: Variable, value: Int) extends Decision {
     require(removed.nonEmpty, s"Decision $this emptied the variable")
     (ps.updateDom(variable, removed), Seq((variable, InsideRemoval(domain, removed))))
   }
+
+  def translate(problem: Problem): Decision = Remove(problem.variable(variable.name), value)
 }
 
 case class Reduce(variable: Variable, newDomain: Domain) extends Decision {
@@ -39,6 +48,8 @@ case class Reduce(variable: Variable, newDomain: Domain) extends Decision {
     val intersect = domain & newDomain
     (ps.updateDom(variable, intersect), Seq((variable, InsideRemoval(domain, intersect))))
   }
+
+  def translate(problem: Problem): Decision = Reduce(problem.variable(variable.name), newDomain)
 }
 
 case class DeadEnd(cause: Variable*) extends Decision {
@@ -47,6 +58,8 @@ case class DeadEnd(cause: Variable*) extends Decision {
   override def toString: String = "dead-end" + cause.mkString("(", ", ", ")")
 
   def apply(ps: ProblemState): (Outcome, Seq[(Variable, Event)]) = (Contradiction(cause), Seq())
+
+  def translate(problem: Problem): Decision = DeadEnd(cause.map(v => problem.variable(v.name)): _*)
 }
 
 case object Continue extends Decision {
@@ -55,4 +68,6 @@ case object Continue extends Decision {
   override def toString: String = "continue"
 
   def apply(ps: ProblemState): (Outcome, Seq[(Variable, Event)]) = (ps, Seq())
+
+  def translate(problem: Problem): Decision = this
 }
\ No newline at end of file
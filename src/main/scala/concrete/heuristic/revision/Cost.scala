@@ -0,0 +1,84 @@
+package concrete.heuristic.revision
+
+import java.util
+
+import concrete.ProblemState
+import concrete.constraint.Constraint
+
+import scala.collection.mutable
+
+object Cost {
+  /**
+    * Weight of the last sample in exponentially decayed averages
+    */
+  val ALPHA = 0.125
+
+  final class Estimate {
+    var cost = 0.0
+    var removed = 0.0
+    var samples = 0L
+
+    def update(nanos: Long, rem: Int): Unit = {
+      if (samples == 0) {
+        cost = nanos
+        removed = rem
+      } else {
+        cost += ALPHA * (nanos - cost)
+        removed += ALPHA * (rem - removed)
+      }
+      samples += 1
+    }
+
+    def key: Int = math.min(Int.MaxValue.toDouble, cost / (1 + removed)).toInt
+
+    override def toString = f"$cost%.0f ns, $removed%.2f removed"
+  }
+
+}
+
+/**
+  * Orders revisions by measured cost per removed value: exponentially decayed
+  * averages of the time and pruning of revisions are maintained for each
+  * constraint and for each constraint class. Class averages are used for
+  * constraints that have not been revised yet. Constraints of unknown classes
+  * are revised first (optimistic initialization).
+  */
+final class Cost extends MeasuredKey[Constraint] {
+
+  import Cost._
+
+  private val classes = new mutable.HashMap[Class[_], Estimate]()
+
+  /**
+    * Estimates of constraints, indexed by id. Null until the first revision.
+    */
+  private var estimates = new Array[Estimate](16)
+
+  private def ensureCapacity(minCapacity: Int): Unit = {
+    val oldCapacity = estimates.length
+    if (minCapacity > oldCapacity) {
+      val newCapacity = math.max(minCapacity, (oldCapacity * 3) / 2 + 1)
+      estimates = util.Arrays.copyOf(estimates, newCapacity)
+    }
+  }
+
+  def revised(c: Constraint, nanos: Long, rem: Int): Unit = {
+    val id = c.id
+    ensureCapacity(id + 1)
+    if (estimates(id) == null) estimates(id) = new Estimate
+    estimates(id).update(nanos, rem)
+
+    classes.getOrElseUpdate(c.getClass, new Estimate).update(nanos, rem)
+  }
+
+  def getKey(c: Constraint, s: ProblemState): Int = {
+    val id = c.id
+    if (id < estimates.length && estimates(id) != null) {
+      estimates(id).key
+    } else {
+      classes.get(c.getClass).map(_.key).getOrElse(0)
+    }
+  }
+
+  override def toString = "constraint.cost"
+}
@@ -27,3 +27,12 @@ trait Key[T] {
   def getKey(o: T, s: ProblemState): Int
 }
 
+
+/**
+  * Keys learning from the actual cost of each revision: ACC reports the time
+  * taken by each revision and the number of values it removed (a contradiction
+  * counts as the removal of all values in the scope).
+  */
+trait MeasuredKey[T] extends Key[T] {
+  def revised(o: T, nanos: Long, removed: Int): Unit
+}
@@ -0,0 +1,154 @@
+package concrete.priorityqueues
+
+import java.util
+
+import cspom.Statistic
+
+object AdaptiveQueue {
+  val BIT_VECTOR = 0
+  val HEAP = 1
+  val FIFOS = 2
+
+  /**
+    * Relative cost of a QuickFifos operation, accounting for the imprecision
+    * of the ordering: buckets are only used for very large queues.
+    */
+  val FIFO_COST = 12.0
+
+  private val LOG2 = math.log(2)
+
+  /**
+    * Estimated costs of the three backends given the number of offers and polls
+    * and the average queue occupancy measured during some time window.
+    */
+  def costs(offers: Long, polls: Long, occupancy: Double): Array[Double] = {
+    val ops = (offers + polls).toDouble
+    Array(
+      // BitVectorPriorityQueue: O(1) offers, polls scan all queued elements
+      offers + polls * (1 + occupancy),
+      // BinaryHeap: O(log n) offers and polls
+      ops * (1 + math.log(1 + occupancy) / LOG2),
+      // QuickFifos: O(1) offers and polls
+      ops * FIFO_COST)
+  }
+}
+
+/**
+  * Queue switching online between BitVectorPriorityQueue (tiny queues),
+  * BinaryHeap (medium queues) and QuickFifos (huge queues). Offers, polls and
+  * queue occupancy are sampled over windows of the given number of polls. At the
+  * end of each window, contents are migrated to the backend with the lowest
+  * estimated cost if the cost of the current backend exceeds it by the
+  * given factor.
+  *
+  * @param <T>
+  */
+final class AdaptiveQueue[T <: Identified with PTag with DLNode[T]](window: Int, threshold: Double) extends PriorityQueue[T] {
+
+  import AdaptiveQueue._
+
+  @Statistic
+  var nbOffer = 0L
+  @Statistic
+  var nbPoll = 0L
+  @Statistic
+  var nbMigrations = 0L
+
+  private val backends: Array[PriorityQueue[T]] =
+    Array(new BitVectorPriorityQueue[T](), new BinaryHeap[T](), new QuickFifos[T]())
+
+  private var current = HEAP
+
+  private var queue = backends(current)
+
+  private var keys = new Array[Int](16)
+
+  private var inQueue = Array.fill(16)(-1)
+
+  private var iter = 0
+
+  private var size = 0
+
+  private var windowOffers = 0L
+
+  private var windowPolls = 0L
+
+  private var windowOccupancy = 0L
+
+  def this() = this(256, 1.5)
+
+  def backend: PriorityQueue[T] = queue
+
+  private def ensureCapacity(minCapacity: Int): Unit = {
+    val oldCapacity = keys.length
+    if (minCapacity > oldCapacity) {
+      val newCapacity = math.max(minCapacity, (oldCapacity * 3) / 2 + 1)
+      keys = util.Arrays.copyOf(keys, newCapacity)
+      inQueue = util.Arrays.copyOf(inQueue, newCapacity)
+      util.Arrays.fill(inQueue, oldCapacity, newCapacity, -1)
+    }
+  }
+
+  def offer(e: T, eval: Int): Boolean = {
+    val id = e.id
+    ensureCapacity(id + 1)
+    keys(id) = eval
+    nbOffer += 1
+    windowOffers += 1
+    queue.offer(e, eval)
+    if (inQueue(id) == iter) {
+      false
+    } else {
+      inQueue(id) = iter
+      size += 1
+      true
+    }
+  }
+
+  def poll(): T = {
+    nbPoll += 1
+    windowPolls += 1
+    windowOccupancy += size
+    if (windowPolls >= window) adapt()
+
+    val e = queue.poll()
+    inQueue(e.id) = -1
+    size -= 1
+    e
+  }
+
+  def clear(): Unit = {
+    queue.clear()
+    iter += 1
+    size = 0
+  }
+
+  def isEmpty: Boolean = size == 0
+
+  private def adapt(): Unit = {
+    val c = costs(windowOffers, windowPolls, windowOccupancy.toDouble / windowPolls)
+    val best = c.indices.minBy(i => c(i))
+    if (best != current && c(current) > threshold * c(best)) {
+      migrate(best)
+    }
+    windowOffers = 0
+    windowPolls = 0
+    windowOccupancy = 0
+  }
+
+  private def migrate(to: Int): Unit = {
+    val next = backends(to)
+    next.clear()
+    while (!queue.isEmpty) {
+      val e = queue.poll()
+      next.offer(e, keys(e.id))
+    }
+    queue.clear()
+    current = to
+    queue = next
+    nbMigrations += 1
+  }
+
+  override def toString: String = s"Adaptive(${queue.getClass.getSimpleName}): $queue"
+
+}
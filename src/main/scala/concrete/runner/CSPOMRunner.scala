@@ -39,7 +39,8 @@ trait CSPOMRunner extends ConcreteRunner {
       problem <- generate(pm, cspom2)
       solver <- Solver(problem,
         problem.variables.filter(x => cspom.expressionMap.expression(x.name).isDefined).toSeq,
-        updateParams(pm, cspom2))
+        updateParams(pm, cspom2),
+        () => new ProblemGenerator(pm).generate(cspom2).map(_._1))
     } yield {
       cspomSolver = new CSPOMSolver(solver, cspom2.expressionMap, variables)
       solver
@@ -1,5 +1,6 @@
 package concrete.runner
 
+import java.nio.file.Paths
 import java.security.InvalidParameterException
 
 import com.typesafe.scalalogging.LazyLogging
@@ -58,6 +59,8 @@ trait ConcreteRunner extends LazyLogging {
     statistics.register("CSPOMCompiler", CSPOMCompiler)
     //statistics.register("problemGenerator", ProblemGenerator)
 
+    var solver: Option[Solver] = None
+
     // Regular try/catch required to catch OutOfMemoryErrors
     val status = try {
       val (tryLoad, lT) = StatisticsManager.measureTry {
@@ -68,7 +71,7 @@ trait ConcreteRunner extends LazyLogging {
       val stat = for (solv <- tryLoad) yield {
 
         statistics.register("solver", solv)
-        // solver = Some(solv)
+        solver = Some(solv)
         val r = if (pm.contains("a") || solv.optimises.nonEmpty) {
           for (s <- solv) {
             solution(solv, s, writer, pm)
@@ -99,6 +102,14 @@ trait ConcreteRunner extends LazyLogging {
     }
 
 
+    for (
+      file <- pm.getRaw("ac3c.profile").collect { case f: String => f };
+      s <- solver;
+      p <- s.profiler
+    ) {
+      p.writeJSON(Paths.get(file))
+    }
+
     writer.end = status
     status
   }
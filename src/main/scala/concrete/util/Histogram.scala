@@ -0,0 +1,85 @@
+package concrete.util
+
+import java.util
+
+object Histogram {
+  /**
+    * Relative precision of recorded values is 2^-SUB_BITS
+    */
+  val SUB_BITS = 3
+
+  private val SUB_COUNT = 1 << SUB_BITS
+
+  def index(value: Long): Int = {
+    if (value < SUB_COUNT) {
+      value.toInt
+    } else {
+      val e = 63 - java.lang.Long.numberOfLeadingZeros(value) - SUB_BITS
+      (e + 1) * SUB_COUNT + (value >>> e).toInt - SUB_COUNT
+    }
+  }
+
+  /**
+    * @return the highest value recorded in the bucket of the given index
+    */
+  def highest(index: Int): Long = {
+    if (index < SUB_COUNT) {
+      index
+    } else {
+      val e = index / SUB_COUNT - 1
+      val mantissa = index % SUB_COUNT + SUB_COUNT
+      ((mantissa + 1L) << e) - 1
+    }
+  }
+}
+
+/**
+  * Histogram of non-negative longs in the style of HdrHistogram: values are
+  * counted in log-linear buckets, so that percentiles are obtained with a
+  * bounded relative error for any order of magnitude, using a few hundred
+  * bytes. Buckets grow on demand up to the largest recorded value.
+  */
+final class Histogram {
+
+  import Histogram._
+
+  private var counts = new Array[Int](SUB_COUNT)
+
+  var count = 0L
+
+  var total = 0L
+
+  var max = 0L
+
+  def record(value: Long): Unit = {
+    require(value >= 0)
+    val i = index(value)
+    if (i >= counts.length) {
+      counts = util.Arrays.copyOf(counts, math.max(i + 1, (counts.length * 3) / 2 + 1))
+    }
+    counts(i) += 1
+    count += 1
+    total += value
+    max = math.max(max, value)
+  }
+
+  def mean: Double = if (count == 0) 0.0 else total.toDouble / count
+
+  /**
+    * @param p percentile, in [0, 100]
+    * @return an upper bound of the value at the given percentile
+    */
+  def percentile(p: Double): Long = {
+    val target = math.max(1L, math.ceil(p / 100 * count).toLong)
+    var seen = 0L
+    var i = 0
+    while (i < counts.length) {
+      seen += counts(i)
+      if (seen >= target) return math.min(max, highest(i))
+      i += 1
+    }
+    max
+  }
+
+  override def toString = s"$count values, mean ${mean.toLong}, p50 ${percentile(50)}, p99 ${percentile(99)}, max $max"
+}
@@ -0,0 +1,134 @@
+package concrete.util
+
+import java.util
+
+/**
+  * Persistent int-indexed storage used by ProblemState for domains and
+  * constraint states.
+  */
+sealed trait Store[A <: AnyRef] {
+  def apply(i: Int): A
+
+  def get(i: Int): Option[A]
+
+  def updated(i: Int, a: A): Store[A]
+
+  def size: Int
+}
+
+final class MapStore[A <: AnyRef](private val map: Map[Int, A]) extends Store[A] {
+  def apply(i: Int): A = map(i)
+
+  def get(i: Int): Option[A] = map.get(i)
+
+  def updated(i: Int, a: A): MapStore[A] = new MapStore(map.updated(i, a))
+
+  def size: Int = map.size
+
+  override def toString: String = map.toString
+}
+
+object TrailedStore {
+  def apply[A <: AnyRef](init: Iterable[A]): TrailedStore[A] = {
+    val array: Array[AnyRef] = init.toArray[AnyRef]
+    new TrailedStore[A](array, array.length)
+  }
+
+  def empty[A <: AnyRef]: TrailedStore[A] = new TrailedStore[A](new Array[AnyRef](16), 0)
+}
+
+/**
+  * Persistent array in the style of Baker (1978), as described by Conchon and
+  * Filliâtre (2007). Only the most recently accessed version holds the flat
+  * array; other versions are diffs pointing towards it. Updates modify the
+  * array in place and turn the updated version into a diff, i.e., a trail
+  * entry. Accessing an older version (typically on backtrack) unwinds the
+  * trail up to that version.
+  *
+  * Reading the current version does not allocate, and an update allocates a
+  * single object. Instances are not thread-safe, even when used as values.
+  */
+final class TrailedStore[A <: AnyRef] private(
+                                                private var array: Array[AnyRef],
+                                                val size: Int) extends Store[A] {
+
+  /**
+    * If next is not null, this version is next with array(index) = value
+    */
+  private var next: TrailedStore[A] = _
+  private var index: Int = _
+  private var value: AnyRef = _
+
+  private def reroot(): Unit = {
+    if (next ne null) {
+      // Reverse the chain from this version to the one holding the array
+      var prev: TrailedStore[A] = null
+      var t = this
+      while (t.next ne null) {
+        val n = t.next
+        t.next = prev
+        prev = t
+        t = n
+      }
+
+      // Move the array back along the chain
+      val a = t.array
+      var root = t
+      var p = prev
+      while (p ne null) {
+        val pn = p.next
+        val i = p.index
+        val old = a(i)
+        a(i) = p.value
+        root.array = null
+        root.index = i
+        root.value = old
+        root.next = p
+        p.array = a
+        p.next = null
+        p.value = null
+        root = p
+        p = pn
+      }
+    }
+  }
+
+  def apply(i: Int): A = {
+    reroot()
+    array(i).asInstanceOf[A]
+  }
+
+  def get(i: Int): Option[A] = {
+    reroot()
+    if (i < array.length) Option(array(i).asInstanceOf[A]) else None
+  }
+
+  def updated(i: Int, a: A): TrailedStore[A] = {
+    reroot()
+    val arr = array
+    if (i >= arr.length) {
+      // Versions cannot share arrays of different lengths
+      val grown = util.Arrays.copyOf(arr, math.max(i + 1, (arr.length * 3) / 2 + 1))
+      grown(i) = a
+      new TrailedStore[A](grown, math.max(size, i + 1))
+    } else {
+      val old = arr(i)
+      if (old eq a) {
+        this
+      } else {
+        arr(i) = a
+        val res = new TrailedStore[A](arr, math.max(size, i + 1))
+        array = null
+        index = i
+        value = old
+        next = res
+        res
+      }
+    }
+  }
+
+  override def toString: String = {
+    reroot()
+    array.iterator.take(size).zipWithIndex.map { case (a, i) => s"$i -> $a" }.mkString("TrailedStore(", ", ", ")")
+  }
+}
@@ -0,0 +1,121 @@
+package concrete.util
+
+import java.util
+
+object ThetaLambdaTree {
+  /** Stands for -∞, small enough to be summed twice without overflow */
+  val NEG: Long = Long.MinValue / 4
+}
+
+/**
+  * Theta-Lambda tree (Vilím, CP 2009) over at most maxLeaves tasks, leaves
+  * being sorted by earliest start time. Each leaf is either empty, in Θ
+  * (white) or in Λ (gray). Nodes maintain the energy e and the envelope Env
+  * of Θ, and the same values allowing at most one gray task.
+  *
+  * Envelopes of leaves are given by the caller (C·est + e for edge-finding),
+  * so that other weightings of the start times can be used.
+  */
+final class ThetaLambdaTree(maxLeaves: Int) {
+
+  import ThetaLambdaTree.NEG
+
+  /** Index of the first leaf, a power of 2 */
+  private val offset = Integer.highestOneBit(math.max(1, maxLeaves - 1)) << 1
+
+  private val e = new Array[Long](2 * offset)
+  private val env = new Array[Long](2 * offset)
+  private val eLambda = new Array[Long](2 * offset)
+  private val envLambda = new Array[Long](2 * offset)
+
+  clear()
+
+  def clear(): Unit = {
+    util.Arrays.fill(e, 0L)
+    util.Arrays.fill(env, NEG)
+    util.Arrays.fill(eLambda, NEG)
+    util.Arrays.fill(envLambda, NEG)
+  }
+
+  def addTheta(leaf: Int, envelope: Long, energy: Long): Unit =
+    set(leaf, energy, envelope, NEG, NEG)
+
+  def addLambda(leaf: Int, envelope: Long, energy: Long): Unit =
+    set(leaf, 0L, NEG, energy, envelope)
+
+  def remove(leaf: Int): Unit = set(leaf, 0L, NEG, NEG, NEG)
+
+  /** Envelope of Θ */
+  def envelope: Long = env(1)
+
+  /** Largest envelope of Θ with at most one task of Λ */
+  def envelopeLambda: Long = envLambda(1)
+
+  /**
+    * Envelope of Θ when only the leaves 0 to last may start a set, i.e. the
+    * largest envelope of a leaf a ≤ last plus the energy of the Θ-leaves
+    * after a, in O(log n).
+    */
+  def envelopeUntil(last: Int): Long = {
+    var n = offset + last
+    var envelope = env(n)
+    // Energy of the Θ-leaves before or at last in the current subtree
+    var energy = e(n)
+    while (n > 1) {
+      if ((n & 1) == 1) {
+        envelope = math.max(env(n - 1) + energy, envelope)
+        energy += e(n - 1)
+      }
+      n /= 2
+    }
+    envelope + e(1) - energy
+  }
+
+  /**
+    * @return the gray leaf responsible for envelopeLambda. Only valid when
+    *         envelopeLambda is greater than envelope.
+    */
+  def responsibleEnvelope: Int = {
+    var n = 1
+    while (n < offset) {
+      val l = 2 * n
+      val r = l + 1
+      if (envLambda(n) == envLambda(l) + e(r)) {
+        n = l
+      } else if (envLambda(n) == env(l) + eLambda(r)) {
+        return responsibleEnergy(r)
+      } else {
+        n = r
+      }
+    }
+    n - offset
+  }
+
+  private def responsibleEnergy(node: Int): Int = {
+    var n = node
+    while (n < offset) {
+      val l = 2 * n
+      if (eLambda(n) == eLambda(l) + e(l + 1)) n = l else n = l + 1
+    }
+    n - offset
+  }
+
+  private def set(leaf: Int, energy: Long, envelope: Long, energyLambda: Long, envelopeLambda: Long): Unit = {
+    var n = offset + leaf
+    e(n) = energy
+    env(n) = envelope
+    eLambda(n) = energyLambda
+    envLambda(n) = envelopeLambda
+    n /= 2
+    while (n > 0) {
+      val l = 2 * n
+      val r = l + 1
+      e(n) = e(l) + e(r)
+      env(n) = math.max(env(l) + e(r), env(r))
+      eLambda(n) = math.max(eLambda(l) + e(r), e(l) + eLambda(r))
+      envLambda(n) = math.max(math.max(envLambda(l) + e(r), env(l) + eLambda(r)), envLambda(r))
+      n /= 2
+    }
+  }
+
+}
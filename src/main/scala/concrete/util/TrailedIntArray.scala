@@ -0,0 +1,140 @@
+package concrete.util
+
+import java.util
+
+object TrailedIntArray {
+  def apply(init: Array[Int]): TrailedIntArray = new TrailedIntArray(init.clone())
+
+  /**
+    * In-place modifications of a version. Other versions of the same array
+    * must not be accessed until the batch is committed.
+    */
+  final class Batch private[util](base: TrailedIntArray) {
+    private val array = base.array
+
+    private var undo = new Array[Int](16)
+
+    private var size = 0
+
+    def apply(i: Int): Int = array(i)
+
+    def update(i: Int, v: Int): Unit = {
+      val old = array(i)
+      if (old != v) {
+        if (size + 2 > undo.length) undo = util.Arrays.copyOf(undo, undo.length * 2)
+        undo(size) = i
+        undo(size + 1) = old
+        size += 2
+        array(i) = v
+      }
+    }
+
+    /**
+      * @return the modified version. The base version remains valid and
+      *         becomes a trail entry.
+      */
+    def commit(): TrailedIntArray = {
+      if (size == 0) {
+        base
+      } else {
+        val res = new TrailedIntArray(array)
+        base.array = null
+        base.undo = util.Arrays.copyOf(undo, size)
+        base.next = res
+        res
+      }
+    }
+  }
+
+}
+
+/**
+  * Persistent array of primitive ints, see TrailedStore. Modifications are
+  * grouped in batches, so that each batch allocates a single version, plus
+  * the list of modified indices and former values.
+  */
+final class TrailedIntArray private(private var array: Array[Int]) {
+
+  /**
+    * If next is not null, this version is next with the (index, value) pairs
+    * of undo applied in reverse order
+    */
+  private var next: TrailedIntArray = _
+  private var undo: Array[Int] = _
+
+  def apply(i: Int): Int = {
+    reroot()
+    array(i)
+  }
+
+  def length: Int = {
+    reroot()
+    array.length
+  }
+
+  def batch(): TrailedIntArray.Batch = {
+    reroot()
+    new TrailedIntArray.Batch(this)
+  }
+
+  private def reroot(): Unit = {
+    if (next ne null) {
+      var prev: TrailedIntArray = null
+      var t = this
+      while (t.next ne null) {
+        val n = t.next
+        t.next = prev
+        prev = t
+        t = n
+      }
+
+      val a = t.array
+      var root = t
+      var p = prev
+      while (p ne null) {
+        val pn = p.next
+        val u = p.undo
+        // Restore values of p, and keep values of the former root in the
+        // same list
+        var k = u.length - 2
+        while (k >= 0) {
+          val i = u(k)
+          val current = a(i)
+          a(i) = u(k + 1)
+          u(k + 1) = current
+          k -= 2
+        }
+        reversePairs(u)
+
+        root.array = null
+        root.undo = u
+        root.next = p
+        p.array = a
+        p.undo = null
+        p.next = null
+        root = p
+        p = pn
+      }
+    }
+  }
+
+  private def reversePairs(u: Array[Int]): Unit = {
+    var i = 0
+    var j = u.length - 2
+    while (i < j) {
+      val ti = u(i)
+      val tv = u(i + 1)
+      u(i) = u(j)
+      u(i + 1) = u(j + 1)
+      u(j) = ti
+      u(j + 1) = tv
+      i += 2
+      j -= 2
+    }
+  }
+
+  override def toString: String = {
+    reroot()
+    array.mkString("TrailedIntArray(", ", ", ")")
+  }
+}
@@ -68,11 +68,11 @@ final class IntDomainTest extends FlatSpec with Matchers with ScalaCheckProperty
     val u1 = d1 | IntDomain.ofSeq(12, 15)
 
     u1.view should contain theSameElementsAs (5 to 10) ++ Seq(12, 15)
-    u1 shouldBe a[BitVectorDomain]
+    u1 shouldBe a[SmallBitDomain]
 
     val u2 = d1 | IntDomain.ofInterval(12, 15)
     u2.view should contain theSameElementsAs (5 to 10) ++ (12 to 15)
-    u2 shouldBe a[BitVectorDomain]
+    u2 shouldBe a[SmallBitDomain]
 
     val u3 = d1 | IntDomain.ofInterval(10, 15)
     u3.view should contain theSameElementsAs (5 to 15)
@@ -88,7 +88,7 @@ final class IntDomainTest extends FlatSpec with Matchers with ScalaCheckProperty
 
     val u6 = d1 | Singleton(15)
     u6.view should contain theSameElementsAs (5 to 10) ++ Seq(15)
-    u6 shouldBe a[BitVectorDomain]
+    u6 shouldBe a[SmallBitDomain]
 
     val u7 = d1 | Singleton(11)
     u7.view should contain theSameElementsAs (5 to 11)
@@ -126,11 +126,11 @@ final class IntDomainTest extends FlatSpec with Matchers with ScalaCheckProperty
     val u1 = d1 | IntDomain.ofSeq(12, 15)
 
     u1.view should contain theSameElementsAs Seq(5, 7, 10) ++ Seq(12, 15)
-    u1 shouldBe a[BitVectorDomain]
+    u1 shouldBe a[SmallBitDomain]
 
     val u2 = d1 | IntDomain.ofInterval(10, 15)
     u2.view should contain theSameElementsAs Seq(5, 7) ++ (10 to 15)
-    u2 shouldBe a[BitVectorDomain]
+    u2 shouldBe a[SmallBitDomain]
 
     val u3 = d1 | IntDomain.ofInterval(5, 15)
     u3.view should contain theSameElementsAs (5 to 15)
@@ -138,7 +138,7 @@ final class IntDomainTest extends FlatSpec with Matchers with ScalaCheckProperty
 
     val u6 = d1 | Singleton(15)
     u6.view should contain theSameElementsAs Seq(5, 7, 10, 15)
-    u6 shouldBe a[BitVectorDomain]
+    u6 shouldBe a[SmallBitDomain]
 
     d1 | Singleton(10) should be theSameInstanceAs d1
 
@@ -159,7 +159,7 @@ final class IntDomainTest extends FlatSpec with Matchers with ScalaCheckProperty
 
     val i1 = d1 & IntDomain.ofInterval(7, 15)
     i1.view should contain theSameElementsAs Seq(7, 10)
-    i1 shouldBe a[BitVectorDomain]
+    i1 shouldBe a[SmallBitDomain]
 
     d1 & IntDomain.ofInterval(0, 10) shouldBe d1
 
@@ -177,6 +177,6 @@ final class IntDomainTest extends FlatSpec with Matchers with ScalaCheckProperty
 
     val u2 = d1 | Singleton(12)
     u2.view should contain theSameElementsAs Seq(10, 12)
-    u2 shouldBe a[BitVectorDomain]
+    u2 shouldBe a[SmallBitDomain]
   }
 }
\ No newline at end of file
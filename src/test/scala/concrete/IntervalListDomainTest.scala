@@ -0,0 +1,77 @@
+package concrete
+
+import org.scalacheck.Gen
+import org.scalatest.{FlatSpec, Matchers}
+import org.scalatestplus.scalacheck.ScalaCheckPropertyChecks
+
+class IntervalListDomainTest extends FlatSpec with Matchers with ScalaCheckPropertyChecks {
+
+  "IntervalListDomains" should "be chosen for large spans with few holes" in {
+    val d = IntDomain.ofInterval(0, 1000000) - 500
+    d shouldBe an[IntervalListDomain]
+    d.size shouldBe 1000000
+    d should not contain 500
+    d should contain(499)
+    d should contain(501)
+
+    IntDomain.ofInterval(0, 100) - 50 shouldBe a[BitVectorDomain]
+    Singleton(0) | 1000000 shouldBe an[IntervalListDomain]
+  }
+
+  it should "navigate" in {
+    val d = IntDomain.ofIntervals(Array(0, 10, 1000, 1000, 5000, 10000))
+    d.head shouldBe 0
+    d.last shouldBe 10000
+    d.size shouldBe 11 + 1 + 5001
+    d.next(10) shouldBe 1000
+    d.next(1000) shouldBe 5000
+    d.next(5000) shouldBe 5001
+    d.prev(5000) shouldBe 1000
+    d.prev(999) shouldBe 10
+    d.prev(100000) shouldBe 10000
+    d.median shouldBe 5000 + (d.size / 2 - 12)
+    a[NoSuchElementException] should be thrownBy d.next(10000)
+    a[NoSuchElementException] should be thrownBy d.prev(0)
+    d.iteratorFrom(8).take(5).toSeq shouldBe Seq(8, 9, 10, 1000, 5000)
+    d.reverseIterator.drop(5000).take(4).toSeq shouldBe Seq(5000, 1000, 10, 9)
+    d.iterator.size shouldBe d.size
+  }
+
+  it should "filter" in {
+    val d = IntDomain.ofIntervals(Array(0, 10, 1000, 1000, 5000, 10000))
+    d.removeFrom(1000).last shouldBe 10
+    d.removeUntil(11).head shouldBe 1000
+    d.removeTo(1000) shouldBe an[IntervalDomain]
+    d.removeAfter(999).view should contain theSameElementsAs (0 to 10)
+    d & (5, 5005) shouldBe an[IntervalListDomain]
+    (d & (5, 5005)).size shouldBe 6 + 1 + 6
+    d & (-1, 10001) should be theSameInstanceAs d
+    d - 1000 shouldBe an[IntervalListDomain]
+    (d - 1000).size shouldBe d.size - 1
+    d - 999 should be theSameInstanceAs d
+    d - 7000 should not contain 7000
+  }
+
+  it should "behave as sets" in {
+    val intervals = Gen.containerOf[Set, (Int, Int)](for {
+      lb <- Gen.choose(-100000, 100000)
+      w <- Gen.choose(0, 1000)
+    } yield (lb, lb + w))
+
+    forAll(intervals, intervals) { (i1, i2) =>
+      val d1 = i1.foldLeft[Domain](EmptyIntDomain) { case (d, (l, u)) => d | IntDomain.ofInterval(l, u) }
+      val d2 = i2.foldLeft[Domain](EmptyIntDomain) { case (d, (l, u)) => d | IntDomain.ofInterval(l, u) }
+      val s1 = i1.flatMap { case (l, u) => l to u }
+      val s2 = i2.flatMap { case (l, u) => l to u }
+
+      d1.size shouldBe s1.size
+      (d1 & d2).size shouldBe (s1 & s2).size
+      (d1 | d2).size shouldBe (s1 | s2).size
+      (d1 & d2).forall(s1 & s2) shouldBe true
+      if (s1.nonEmpty && s2.nonEmpty) {
+        d1.disjoint(d2) shouldBe (s1 & s2).isEmpty
+        d1.subsetOf(d2) shouldBe s1.subsetOf(s2)
+      }
+    }
+  }
+}
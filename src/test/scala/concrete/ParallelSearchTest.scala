@@ -0,0 +1,53 @@
+package concrete
+
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.util.Success
+
+class ParallelSearchTest extends FlatSpec with Matchers {
+
+  import PortfolioTest.qp
+
+  private val pm = new ParameterManager()
+    .updated("parallel.workers", 4)
+    .updated("parallel.subproblems", 16)
+
+  behavior of "ParallelSearch"
+
+  it should "enumerate all solutions" in {
+    val problem = qp(8, _ => Satisfy)
+    val solver = ParallelSearch(problem, problem.variables.toSeq, pm, () => Success(qp(8, _ => Satisfy))).get
+
+    val solutions = solver.toSeq
+    solutions.size shouldBe 92
+    solutions.distinct.size shouldBe 92
+    solver.subproblems should be >= 16
+  }
+
+  it should "enumerate all solutions once when explanations are asked" in {
+    val problem = qp(8, _ => Satisfy)
+    val solver = ParallelSearch(problem, problem.variables.toSeq, pm.updated("mac.explain", ()),
+      () => Success(qp(8, _ => Satisfy))).get
+
+    val solutions = solver.toSeq
+    solutions.size shouldBe 92
+    solutions.distinct.size shouldBe 92
+  }
+
+  it should "prove optimality" in {
+    def gen() = qp(8, q => Minimize(q.last))
+
+    val problem = gen()
+    val solver = ParallelSearch(problem, problem.variables.toSeq, pm, () => Success(gen())).get
+
+    val solutions = solver.toSeq
+    solutions.last(problem.variable("q7")) shouldBe 0
+  }
+
+  it should "prove unsatisfiability" in {
+    val problem = qp(3, _ => Satisfy)
+    val solver = ParallelSearch(problem, problem.variables.toSeq, pm, () => Success(qp(3, _ => Satisfy))).get
+    solver.hasNext shouldBe false
+  }
+
+}
@@ -0,0 +1,67 @@
+package concrete
+
+import concrete.constraint.linear.Eq
+import concrete.constraint.semantic.AllDifferentAC
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.util.Success
+
+object PortfolioTest {
+
+  def qp(size: Int, goal: Seq[Variable] => Goal): Problem = {
+    val queens = (0 until size)
+      .map(q => new Variable("q" + q, IntDomain(0 until size)))
+
+    val qd1 = queens.zipWithIndex map {
+      case (q, i) => new Variable("d1_" + q.name, IntDomain(-i until size - i))
+    }
+
+    val qd2 = queens.zipWithIndex map {
+      case (q, i) => new Variable("d2_" + q.name, IntDomain(i until size + i))
+    }
+
+    val problem = new Problem((queens ++ qd1 ++ qd2).toArray, goal(queens))
+
+    for (i <- queens.indices) {
+      Eq(neg = false, queens(i), -i, qd1(i)).foreach(problem.addConstraint)
+      Eq(neg = false, queens(i), i, qd2(i)).foreach(problem.addConstraint)
+    }
+
+    problem.addConstraint(new AllDifferentAC(queens: _*))
+    problem.addConstraint(new AllDifferentAC(qd1: _*))
+    problem.addConstraint(new AllDifferentAC(qd2: _*))
+    problem
+  }
+}
+
+class PortfolioTest extends FlatSpec with Matchers {
+
+  import PortfolioTest._
+
+  private val pm = new ParameterManager().updated("portfolio.workers", 4)
+
+  behavior of "Portfolio"
+
+  it should "enumerate all solutions with the winner" in {
+    val problem = qp(8, _ => Satisfy)
+    val solver = Portfolio(problem, problem.variables.toSeq, pm, () => Success(qp(8, _ => Satisfy))).get
+
+    val solutions = solver.toSeq
+    solutions.size shouldBe 92
+    solutions.distinct.size shouldBe 92
+    all(solutions.map(_.keySet)) shouldBe problem.variables.toSet
+  }
+
+  it should "find the optimum" in {
+    def gen() = qp(8, q => Maximize(q.head))
+
+    val problem = gen()
+    val solver = Portfolio(problem, problem.variables.toSeq, pm, () => Success(gen())).get
+
+    val solutions = solver.toSeq
+    val q0 = problem.variable("q0")
+    solutions.last(q0) shouldBe 7
+    solutions.map(_ (q0).asInstanceOf[Int]) shouldBe sorted
+  }
+
+}
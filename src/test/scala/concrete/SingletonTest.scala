@@ -0,0 +1,25 @@
+package concrete
+
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.concurrent.duration.Duration
+import scala.concurrent.{Await, Future}
+import scala.concurrent.ExecutionContext.Implicits.global
+
+class SingletonTest extends FlatSpec with Matchers {
+
+  "Singletons" should "be interned" in {
+    for (v <- Seq(0, -1, Singleton.WINDOW_LB, Singleton.WINDOW_LB - 1, Singleton.WINDOW_UB, Int.MaxValue, Int.MinValue)) {
+      Singleton(v) should be theSameInstanceAs Singleton(v)
+      Singleton(v).singleValue shouldBe v
+    }
+  }
+
+  it should "be interned once by concurrent threads" in {
+    val values = (Singleton.WINDOW_UB - 1000) until (Singleton.WINDOW_UB + 1000)
+    val interned = Await.result(Future.sequence(Seq.fill(8)(Future(values.map(Singleton(_))))), Duration.Inf)
+    for (s <- interned.tail; i <- values.indices) {
+      s(i) should be theSameInstanceAs interned.head(i)
+    }
+  }
+}
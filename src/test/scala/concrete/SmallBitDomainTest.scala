@@ -0,0 +1,59 @@
+package concrete
+
+import org.scalacheck.Gen
+import org.scalatest.{FlatSpec, Matchers}
+import org.scalatestplus.scalacheck.ScalaCheckPropertyChecks
+
+class SmallBitDomainTest extends FlatSpec with Matchers with ScalaCheckPropertyChecks {
+
+  "SmallBitDomains" should "be chosen for small spans" in {
+    IntDomain.ofSeq(-5, 0, 58) shouldBe a[SmallBitDomain]
+    IntDomain.ofSeq(-5, 0, 59) shouldBe a[BitVectorDomain]
+    IntDomain(0 to 20 by 3) shouldBe a[SmallBitDomain]
+    IntDomain.ofInterval(0, 10) - 5 shouldBe a[SmallBitDomain]
+  }
+
+  it should "navigate" in {
+    val d = IntDomain.ofSeq(3, 5, 6, 20, 66)
+    d.head shouldBe 3
+    d.last shouldBe 66
+    d.size shouldBe 5
+    d.next(-10) shouldBe 3
+    d.next(6) shouldBe 20
+    d.prev(20) shouldBe 6
+    d.prev(100) shouldBe 66
+    d.median shouldBe 6
+    a[NoSuchElementException] should be thrownBy d.next(66)
+    a[NoSuchElementException] should be thrownBy d.prev(3)
+    d.iterator.toSeq shouldBe Seq(3, 5, 6, 20, 66)
+    d.reverseIterator.toSeq shouldBe Seq(66, 20, 6, 5, 3)
+    d.iteratorFrom(6).toSeq shouldBe Seq(6, 20, 66)
+  }
+
+  it should "filter" in {
+    val d = IntDomain.ofSeq(3, 5, 6, 20, 66)
+    d.removeFrom(20).view should contain theSameElementsAs Seq(3, 5, 6)
+    d.removeFrom(6).view should contain theSameElementsAs Seq(3, 5)
+    d.removeUntil(6) shouldBe a[SmallBitDomain]
+    d.removeUntil(21) shouldBe Singleton(66)
+    d & (4, 30) should contain theSameElementsAs Seq(5, 6, 20)
+    d & (-100, 100) should be theSameInstanceAs d
+    d.filter(_ % 2 == 0).view should contain theSameElementsAs Seq(6, 20, 66)
+    d.filterBounds(v => v != 3 && v != 66).view should contain theSameElementsAs Seq(5, 6, 20)
+    d - 5 - 6 - 20 - 66 shouldBe Singleton(3)
+  }
+
+  it should "behave as sets" in {
+    val values = Gen.containerOf[Set, Int](Gen.choose(-20, 40))
+    forAll(values, values) { (s1, s2) =>
+      val d1 = IntDomain.ofSeq(s1.toSeq: _*)
+      val d2 = IntDomain.ofSeq(s2.toSeq: _*)
+      (d1 & d2).view should contain theSameElementsAs (s1 & s2)
+      (d1 | d2).view should contain theSameElementsAs (s1 | s2)
+      if (s1.nonEmpty && s2.nonEmpty) {
+        d1.disjoint(d2) shouldBe (s1 & s2).isEmpty
+        d1.subsetOf(d2: Domain) shouldBe s1.subsetOf(s2)
+      }
+    }
+  }
+}
@@ -1,8 +1,9 @@
 package concrete
 
-import concrete.constraint.linear.Eq
-import concrete.constraint.semantic.AllDifferentAC
-import concrete.heuristic.value.MedValue
+import concrete.constraint.linear.{Eq, Gt}
+import concrete.constraint.semantic.{AllDifferentAC, Neq}
+import concrete.heuristic.value.{MedValue, RevLexico}
+import concrete.heuristic.variable.LexVar
 import cspom.StatisticsManager
 import org.scalatest.{FlatSpec, Matchers, Tag}
 
@@ -71,6 +72,51 @@ class TestMAC extends FlatSpec with Matchers {
     }
   }
 
+  it should "enumerate queens-8 with nogoods learnt from conflicts" in {
+    val problem = qp(8)
+
+    val solver = MAC(problem, problem.variables, pm.updated("mac.explain", ())).get
+
+    val solutions = solver.toSeq
+    solutions.size shouldBe 92
+    solutions.distinct.size shouldBe 92
+    solver.explainer.get.nbLearnt should be > 0
+  }
+
+  it should "optimize with nogoods learnt from conflicts" in {
+    val problem = PortfolioTest.qp(8, q => Minimize(q.last))
+
+    val solver = MAC(problem, problem.variables.toSeq, pm.updated("mac.explain", ())).get
+
+    solver.toSeq.last(problem.variable("q7")) shouldBe 0
+    solver.explainer.get.nbLearnt should be > 0
+  }
+
+  it should "backjump over irrelevant decisions" in {
+    // x = 2 leaves two values for three different z, which is only detected
+    // once the y have been decided
+    val x = new Variable("x", IntDomain(0 to 2))
+    val y = Seq.tabulate(3)(i => new Variable(s"y$i", IntDomain(0 to 2)))
+    val z = Seq.tabulate(3)(i => new Variable(s"z$i", IntDomain(0 to 3)))
+    val problem = Problem(x +: (y ++ z): _*)
+    problem.addConstraint(new Neq(y(0), y(1)))
+    problem.addConstraint(new Neq(y(1), y(2)))
+    for (Seq(z1, z2) <- z.combinations(2)) problem.addConstraint(new Neq(z1, z2))
+    for (zi <- z) problem.addConstraint(new Gt(zi, 0, x, false))
+
+    val params = new ParameterManager()
+      .updated("heuristic.variable", Seq(classOf[LexVar]))
+      .updated("heuristic.value", classOf[RevLexico])
+      .updated("mac.explain", ())
+
+    val solver = MAC(problem, x +: (y ++ z), params).get
+
+    val solutions = solver.toSeq
+    solutions.size shouldBe (24 + 6) * 12
+    solutions.distinct.size shouldBe solutions.size
+    solver.explainer.get.nbLearnt should be > 0
+  }
+
   def view(queens: Seq[Variable], solution: Map[String, Int]): String =
     queens.map(q => q.name + " = " + solution.get(q.name)).mkString(", ")
 
@@ -0,0 +1,52 @@
+package concrete.constraint.extension
+
+import concrete._
+import concrete.constraint.AdviseCount
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.util.Random
+
+final class CompactTableTest extends FlatSpec with Matchers {
+
+  "CompactTable" should "filter" in {
+    val v0 = new Variable("V0", IntDomain(0 to 1))
+    val v1 = new Variable("V1", IntDomain(0 to 2))
+
+    val ct = new CompactTable(Array(v0, v1), Array(Array(0, 0), Array(1, 1), Array(2, 2)))
+    ct.register(new AdviseCount())
+
+    val problem = Problem(v0, v1)
+    problem.addConstraint(ct)
+    val state = problem.initState.toState
+
+    state.dom(v0) should be theSameInstanceAs v0.initDomain
+    state.dom(v1).view should contain theSameElementsAs Seq(0, 1)
+
+    val mod = state.assign(v0, 1)
+    ct.eventAll(mod)
+    val filtered = ct.revise(mod).toState
+    filtered.dom(v1).view should contain theSameElementsAs Seq(1)
+  }
+
+  it should "enforce GAC" in {
+    val rand = new Random(0)
+    for (_ <- 0 until 20) {
+      val (vars, tuples) = RandomTables(rand)
+      val ct = new CompactTable(vars, tuples)
+      ct.register(new AdviseCount())
+      val problem = Problem(vars: _*)
+      problem.addConstraint(ct)
+
+      var state: Outcome = problem.initState
+      while (state.isState && vars.exists(v => !state.dom(v).isAssigned)) {
+        val v = vars.filterNot(state.dom(_).isAssigned)(0)
+        val a = state.dom(v).head
+        val ps = state.toState.remove(v, a).toState
+        ct.eventAll(ps)
+        state = ct.revise(ps)
+        RandomTables.control(vars, tuples, state, ps.doms(vars))
+      }
+    }
+  }
+
+}
@@ -10,6 +10,8 @@ import cspom.variable.IntVariable
 
 import CSPOM._
 
+import scala.util.Random
+
 final class ExtensionConstraint2DTest extends FlatSpec with Inspectors {
 
   val var1 = new Variable("V1", IntDomain(1 to 3))
@@ -108,4 +110,59 @@ final class ExtensionConstraint2DTest extends FlatSpec with Inspectors {
 
   }
 
+
+  it should "find the same supports with AC3-bit+rm on large domains" in {
+    val rand = new Random(0)
+    val size = 300
+    val x = new Variable("X", IntDomain(0 until size))
+    val y = new Variable("Y", IntDomain(0 until size))
+    val matrix = new Matrix2D(size, size, 0, 0, false)
+    for (i <- 0 until size; j <- 0 until size if rand.nextDouble() < .05) matrix.set(i, j, status = true)
+
+    val bit = BinaryExt(Array(x, y), matrix.copy)
+    assert(bit.isInstanceOf[BinaryExtBit])
+    val nr = new BinaryExtNR(Array(x, y), matrix.copy)
+
+    val problem = Problem(x, y)
+    val ac = new AdviseCount
+    for (c <- Seq(bit, nr)) {
+      c.register(ac)
+      problem.addConstraint(c)
+    }
+
+    var ps = problem.initState.toState
+    var round = 0
+    while (round < 20) {
+      for (p <- 0 until 2) {
+        val other = ps.dom(Array(x, y)(1 - p)).toBitVector(0)
+        for (v <- 0 until size) {
+          assert(bit.hasSupport(p, v, other) == nr.hasSupport(p, v, other))
+        }
+      }
+
+      bit.eventAll(ps)
+      nr.eventAll(ps)
+      val filtered = bit.revise(ps)
+      val expected = nr.revise(ps)
+      assert(filtered.isState == expected.isState)
+      if (filtered.isState) {
+        for (v <- Seq(x, y)) {
+          assert(filtered.toState.dom(v).iterator.toSeq == expected.toState.dom(v).iterator.toSeq)
+        }
+      }
+
+      // Remove some tuples so that rows of the bit matrix are refreshed, and
+      // some values so that supports are found in later words
+      val allowed = bit.matrix.allowed.toIndexedSeq
+      for (_ <- 0 until 200 if allowed.nonEmpty) {
+        val t = allowed(rand.nextInt(allowed.size))
+        assert(bit.removeTuple(t) == nr.removeTuple(t))
+      }
+      ps = ps.filterDom(x)(_ => rand.nextDouble() < .95)
+        .andThen(_.filterDom(y)(_ => rand.nextDouble() < .95))
+        .toState
+      round += 1
+    }
+  }
+
 }
@@ -0,0 +1,45 @@
+package concrete.constraint.extension
+
+import concrete._
+import concrete.constraint.AdviseCount
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.util.Random
+
+final class MDD4RTest extends FlatSpec with Matchers {
+
+  "MDD4R" should "enforce GAC and restore states" in {
+    val rand = new Random(0)
+    for (_ <- 0 until 20) {
+      val (vars, tuples) = RandomTables(rand)
+      val c = new MDD4R(vars, MDDRelation(tuples.toSeq))
+      c.register(new AdviseCount())
+      val problem = Problem(vars: _*)
+      problem.addConstraint(c)
+
+      def control(state: Outcome, doms: Array[Domain]): Unit = RandomTables.control(vars, tuples, state, doms)
+
+      val init = problem.initState
+      control(init, vars.map(_.initDomain))
+
+      var states = List(init.toState)
+      var state: Outcome = init
+      while (state.isState && vars.exists(v => !state.dom(v).isAssigned)) {
+        val v = vars.filterNot(state.dom(_).isAssigned)(0)
+        val ps = state.toState.remove(v, state.dom(v).head).toState
+        c.eventAll(ps)
+        state = c.revise(ps)
+        control(state, ps.doms(vars))
+        state.map(s => states ::= s)
+      }
+
+      // Former states remain valid
+      for (s <- states.reverse if s.dom(vars(3)).size > 1) {
+        val ps = s.remove(vars(3), s.dom(vars(3)).last).toState
+        c.eventAll(ps)
+        control(c.revise(ps), ps.doms(vars))
+      }
+    }
+  }
+
+}
@@ -1,7 +1,7 @@
 package concrete.constraint.extension
 
-
-import concrete.{IntDomain, Variable}
+import concrete.{Domain, IntDomain, Variable}
+import mdd.BDD
 import org.scalacheck.Gen
 import org.scalatest.{FlatSpec, Matchers, OptionValues}
 import org.scalatestplus.scalacheck.ScalaCheckPropertyChecks
@@ -71,4 +71,29 @@ class MDDRelationTest extends FlatSpec with Matchers with ScalaCheckPropertyChec
     mdd.findSupport(scope, 0, 158) shouldBe None
     mdd.findSupport(scope, 0, 160).value shouldBe Array(160, 160, 0)
   }
+
+  it should "collect supported values" in {
+    val doms = Array[Domain](IntDomain(0 to 2), IntDomain(0 to 3) - 2, IntDomain(0 to 5))
+    val tuples = Seq(Array(1, 3, 4), Array(2, 3, 5))
+
+    val bdd = new BDDRelation(BDD(mdd.mdd).reduce())
+    val assigned = Array[Domain](doms(0), doms(1), IntDomain.ofSeq(5))
+
+    for (relation <- Seq[Relation](mdd.filterTrie(doms, List(1)), bdd, STR(tuples.toArray), HashTable(tuples.toArray))) {
+      val supports = new Supports(3)
+      relation match {
+        case _: MDDRelation | _: BDDRelation =>
+          // Diagrams skip invalid tuples, nodes visited by a previous call must not be reused
+          relation.supported(assigned, supports)
+          supports.filter(0, assigned(0)).view should contain theSameElementsAs Seq(2)
+          supports.filter(2, assigned(2)).view should contain theSameElementsAs Seq(5)
+        case _ =>
+      }
+
+      relation.supported(doms, supports)
+      supports.filter(0, doms(0)).view should contain theSameElementsAs Seq(1, 2)
+      supports.filter(1, doms(1)).view should contain theSameElementsAs Seq(3)
+      supports.filter(2, doms(2)).view should contain theSameElementsAs Seq(4, 5)
+    }
+  }
 }
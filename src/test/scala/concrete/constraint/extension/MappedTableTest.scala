@@ -0,0 +1,47 @@
+package concrete.constraint.extension
+
+import java.nio.file.Files
+
+import concrete.{Domain, IntDomain}
+import org.scalatest.{FlatSpec, Matchers, OptionValues}
+
+import scala.util.Using
+
+final class MappedTableTest extends FlatSpec with Matchers with OptionValues {
+
+  "MappedTable" should "filter memory-mapped tuples" in {
+    val dir = Files.createTempDirectory("relation")
+    try {
+      val tuples = Seq(Array(0, 0, 1), Array(1, 3, 4), Array(2, 3, 5))
+      val table = MappedTable(tuples.iterator, tuples.size, 3, Some(dir))
+      val doms = Array[Domain](IntDomain(0 to 2), IntDomain(0 to 3) - 0, IntDomain(0 to 5))
+
+      val filtered = table.filterTrie(doms, List(1))
+      filtered.size shouldBe 2
+      filtered.contains(Array(0, 0, 1)) shouldBe false
+      filtered.contains(Array(1, 3, 4)) shouldBe true
+      filtered.findSupport(doms, 2, 5).value shouldBe Array(2, 3, 5)
+      filtered.findSupport(doms, 0, 0) shouldBe None
+
+      filtered.copy.contains(Array(0, 0, 1)) shouldBe false
+      table.contains(Array(0, 0, 1)) shouldBe true
+    } finally {
+      // Column files are unlinked once mapped, unless the platform forbids it
+      Using.resource(Files.list(dir))(_.forEach(f => Files.deleteIfExists(f)))
+      Files.delete(dir)
+    }
+  }
+
+  it should "collect supported values" in {
+    val doms = Array[Domain](IntDomain(0 to 2), IntDomain(0 to 3) - 2, IntDomain(0 to 5))
+    val tuples = Seq(Array(1, 3, 4), Array(2, 3, 5))
+    val table = MappedTable(tuples.iterator, tuples.size, 3, None)
+
+    val supports = new Supports(3)
+    table.supported(doms, supports)
+    supports.filter(0, doms(0)).view should contain theSameElementsAs Seq(1, 2)
+    supports.filter(1, doms(1)).view should contain theSameElementsAs Seq(3)
+    supports.filter(2, doms(2)).view should contain theSameElementsAs Seq(4, 5)
+  }
+
+}
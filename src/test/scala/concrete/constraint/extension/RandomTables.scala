@@ -0,0 +1,40 @@
+package concrete.constraint.extension
+
+import concrete._
+import org.scalatest.Matchers
+
+import scala.util.Random
+
+/**
+  * Random positive tables for propagator tests, with a generalized arc
+  * consistency oracle.
+  */
+object RandomTables extends Matchers {
+
+  /**
+    * @return 4 variables with domains 0 until 5 and at most 200 distinct
+    *         random tuples over them
+    */
+  def apply(rand: Random): (Array[Variable], Array[Array[Int]]) = {
+    val vars = Array.tabulate(4)(i => new Variable(s"V$i", IntDomain(0 until 5)))
+    val tuples = Array.fill(200)(Array.fill(4)(rand.nextInt(5))).distinctBy(_.toSeq)
+    (vars, tuples)
+  }
+
+  /**
+    * Checks that the state contains exactly the values supported by the
+    * tuples that are valid for the given domains, or is a contradiction if
+    * there is none.
+    */
+  def control(vars: Array[Variable], tuples: Array[Array[Int]], state: Outcome, doms: Array[Domain]): Unit = {
+    val valid = tuples.filter(t => t.indices.forall(p => doms(p).contains(t(p))))
+    if (valid.isEmpty) {
+      state.isState shouldBe false
+    } else {
+      for (p <- vars.indices) {
+        state.dom(vars(p)).view should contain theSameElementsAs valid.map(_ (p)).distinct
+      }
+    }
+  }
+
+}
@@ -0,0 +1,105 @@
+package concrete.constraint.semantic
+
+import concrete.constraint.AdviseCount
+import concrete.{IntDomain, Problem, ProblemState, Singleton, Variable}
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.util.Random
+
+class CumulativeEdgeFindingTest extends FlatSpec with Matchers {
+
+  private def constraint(starts: Seq[IntDomain], durations: Seq[Int], heights: Seq[Int], bound: Int) = {
+    val s = starts.zipWithIndex.map { case (d, i) => new Variable(s"s$i", d) }.toArray
+    val d = durations.zipWithIndex.map { case (d, i) => new Variable(s"d$i", Singleton(d)) }.toArray
+    val h = heights.zipWithIndex.map { case (h, i) => new Variable(s"h$i", Singleton(h)) }.toArray
+    val b = new Variable("b", Singleton(bound))
+
+    val problem = new Problem(s ++ d ++ h :+ b)
+    val c = new CumulativeEdgeFinding(s, d, h, b)
+    problem.addConstraint(c)
+    c.register(new AdviseCount)
+
+    (s, c, problem.initState)
+  }
+
+  private def revise(c: CumulativeEdgeFinding)(ps: ProblemState) = {
+    c.eventAll(ps)
+    c.revise(ps)
+  }
+
+  private def cumulative(starts: Seq[IntDomain], durations: Seq[Int], heights: Seq[Int], bound: Int) = {
+    val (s, c, init) = constraint(starts, durations, heights, bound)
+    (s, init.andThen(revise(c)))
+  }
+
+  "CumulativeEdgeFinding" should "detect that a task ends after a set of tasks" in {
+    // No compulsory part, so that the time-table cannot filter anything
+    val (s, mod) = cumulative(
+      Seq(IntDomain(0 to 5), IntDomain(0 to 5), IntDomain(0 to 20)), Seq(5, 5, 2), Seq(1, 1, 1), 1)
+
+    mod.dom(s(2)).head shouldBe 10
+    mod.dom(s(0)).view should contain theSameElementsAs (0 to 5)
+  }
+
+  it should "detect overloads" in {
+    val (_, mod) = cumulative(Seq.fill(3)(IntDomain(0 to 6)), Seq(4, 4, 4), Seq(1, 1, 1), 1)
+    assert(!mod.isState)
+  }
+
+  it should "filter using the profile" in {
+    val (s, mod) = cumulative(Seq(Singleton(3), IntDomain(1 to 10)), Seq(4, 3), Seq(2, 1), 2)
+    mod.dom(s(1)).view should contain theSameElementsAs (7 to 10)
+  }
+
+  it should "detect that a task cannot start before a set of tasks" in {
+    // Neither the profile nor edge-finding can filter s1
+    val (s, mod) = cumulative(
+      Seq(IntDomain(1 to 4), IntDomain(3 to 7), IntDomain(4 to 7)), Seq(3, 3, 1), Seq(1, 2, 1), 2)
+
+    mod.dom(s(1)).view should contain theSameElementsAs (4 to 7)
+  }
+
+  it should "keep a valid profile after backtracking" in {
+    val (s, c, init) = constraint(Seq(IntDomain(0 to 4), IntDomain(3 to 10)), Seq(4, 1), Seq(2, 1), 2)
+    val initial = init.andThen(revise(c)).toState
+    initial.dom(s(1)).view should contain theSameElementsAs (3 to 10)
+
+    // Compulsory part of s0 over [2, 6) is added to the profile
+    val assigned = initial.assign(s(0), 2).andThen(revise(c))
+    assigned.dom(s(1)).view should contain theSameElementsAs (6 to 10)
+
+    // Back to the initial state, the compulsory part must be ignored
+    val backtracked = initial.andThen(revise(c))
+    backtracked.dom(s(1)).view should contain theSameElementsAs (3 to 10)
+  }
+
+  it should "not remove solutions" in {
+    val rand = new Random(0)
+    for (_ <- 0 until 30) {
+      val n = 4
+      val starts = Seq.fill(n) {
+        val lb = rand.nextInt(4)
+        IntDomain(lb to lb + rand.nextInt(4))
+      }
+      val durations = Seq.fill(n)(1 + rand.nextInt(3))
+      val heights = Seq.fill(n)(1 + rand.nextInt(2))
+      val bound = 2 + rand.nextInt(2)
+
+      val (s, mod) = cumulative(starts, durations, heights, bound)
+
+      val solutions = starts.map(_.iterator.toSeq).foldLeft(Seq(Seq[Int]())) { (tuples, dom) =>
+        for (t <- tuples; v <- dom) yield t :+ v
+      }.filter { t =>
+        val profile = new Array[Int](20)
+        for (i <- 0 until n; u <- t(i) until t(i) + durations(i)) profile(u) += heights(i)
+        profile.forall(_ <= bound)
+      }
+
+      if (solutions.nonEmpty) {
+        mod.isState shouldBe true
+        for (t <- solutions; i <- 0 until n) mod.dom(s(i)) should contain(t(i))
+      }
+    }
+  }
+
+}
@@ -0,0 +1,90 @@
+package concrete.constraint.semantic
+
+import concrete.constraint.AdviseCount
+import concrete._
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.util.Random
+
+class IncrementalAllDifferentACTest extends FlatSpec with Matchers {
+
+  "IncrementalAllDifferentAC" should "detect contradiction" in {
+    val v1 = new Variable("1", IntDomain.ofSeq(7))
+    val v2 = new Variable("2", IntDomain.ofSeq(6))
+    val v3 = new Variable("3", IntDomain.ofSeq(7, 9))
+    val v4 = new Variable("4", IntDomain.ofSeq(8))
+    val v5 = new Variable("5", IntDomain.ofSeq(8, 9))
+
+    val problem = Problem(v1, v2, v3, v4, v5)
+    val c = new IncrementalAllDifferentAC(v1, v2, v3, v4, v5)
+    c.register(new AdviseCount)
+    problem.addConstraint(c)
+
+    val mod = problem.initState.andThen { ps =>
+      c.eventAll(ps)
+      c.revise(ps)
+    }
+    assert(!mod.isState)
+  }
+
+  it should "filter" in {
+    val v1 = new Variable("v1", IntDomain.ofSeq(3))
+    val v2 = new Variable("v2", IntDomain(0 to 5))
+    val v3 = new Variable("v3", IntDomain.ofSeq(0, 1, 5))
+    val v4 = new Variable("v4", IntDomain.ofSeq(0, 5))
+    val v5 = new Variable("v5", IntDomain.ofSeq(0, 1, 5))
+
+    val problem = Problem(v1, v2, v3, v4, v5)
+    val c = new IncrementalAllDifferentAC(v1, v2, v3, v4, v5)
+    c.register(new AdviseCount)
+    problem.addConstraint(c)
+
+    val mod = problem.initState.andThen { ps =>
+      c.eventAll(ps)
+      c.revise(ps)
+    }.toState
+
+    mod.dom(v2) should contain theSameElementsAs Seq(2, 4)
+
+    c.eventAll(mod)
+    assert(c.revise(mod) == mod)
+  }
+
+  it should "filter as AllDifferentAC after successive reductions" in {
+    val rand = new Random(0)
+    for (_ <- 0 until 50) {
+      val vars = Array.tabulate(8)(i => new Variable(s"X$i", IntDomain.ofSeq(rand.nextInt(10) +: (0 until 10).filter(_ => rand.nextDouble() < .6): _*)))
+      val problem = Problem(vars: _*)
+      val inc = new IncrementalAllDifferentAC(vars)
+      val ref = new AllDifferentAC(vars)
+      for (c <- Seq(inc, ref)) {
+        c.register(new AdviseCount)
+        problem.addConstraint(c)
+      }
+
+      var state = problem.initState.toState
+      var search = true
+      while (search) {
+        inc.eventAll(state)
+        ref.eventAll(state)
+        val filtered = inc.revise(state)
+        val expected = ref.revise(state)
+        filtered.isState shouldBe expected.isState
+        if (filtered.isState) {
+          for (v <- vars) filtered.toState.dom(v) should contain theSameElementsAs expected.toState.dom(v)
+          val fs = filtered.toState.updateState(ref, expected.toState(ref))
+          val free = vars.filter(fs.dom(_).size > 1)
+          if (free.isEmpty) {
+            search = false
+          } else {
+            val v = free(rand.nextInt(free.length))
+            state = fs.updateDomNonEmpty(v, fs.dom(v).removeUntil(fs.dom(v).head + 1))
+          }
+        } else {
+          search = false
+        }
+      }
+    }
+  }
+
+}
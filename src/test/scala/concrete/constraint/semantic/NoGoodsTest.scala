@@ -1,7 +1,7 @@
 package concrete.constraint.semantic
 
 import concrete.constraint.AdviseCount
-import concrete.heuristic.Assign
+import concrete.heuristic.{Assign, Remove}
 import concrete._
 import org.scalatest.{FlatSpec, Matchers}
 
@@ -50,4 +50,60 @@ class NoGoodsTest extends FlatSpec with Matchers {
 
   }
 
+  it should "watch assignments" in {
+    val vars = Array.tabulate(3)(i => new Variable(s"v$i", IntDomain.ofSeq(1, 2, 3)))
+    val problem = Problem(vars: _*)
+    val constraint = new NoGoods(vars)
+    constraint.register(new AdviseCount())
+    val state = problem.initState.toState
+
+    constraint.addNoGood(Seq(Assign(vars(0), 1), Assign(vars(1), 2)), Remove(vars(2), 3))
+    constraint.eventAll(state, InsideRemoval)
+    val s1 = constraint.revise(state).toState
+
+    // Removing values other than the watched one does not trigger the nogood
+    val s2 = s1.removeIfPresent(vars(0), 2).toState
+    constraint.event(s2, InsideRemoval, 0)
+    constraint.revise(s2) should be theSameInstanceAs s2
+
+    val s3 = s2.assign(vars(0), 1).assign(vars(1), 2)
+    constraint.event(s3, Assignment, 0)
+    constraint.event(s3, Assignment, 1)
+    val s4 = constraint.revise(s3)
+    s4.dom(vars(2)) should contain theSameElementsAs Seq(1, 2)
+  }
+
+  it should "reduce the database" in {
+    val vars = Array.tabulate(4)(i => new Variable(s"v$i", IntDomain.ofSeq(1, 2, 3)))
+    val problem = Problem(vars: _*)
+    val constraint = new NoGoods(vars)
+    constraint.register(new AdviseCount())
+    val state = problem.initState.toState
+
+    constraint.addNoGood(Seq(Assign(vars(0), 1)), Remove(vars(1), 1))
+    constraint.addNoGood(Seq(Assign(vars(0), 1), Assign(vars(1), 2)), Remove(vars(2), 1))
+    constraint.addNoGood(Seq(Assign(vars(0), 1), Assign(vars(1), 2), Assign(vars(2), 3)), Remove(vars(3), 1))
+    constraint.eventAll(state, InsideRemoval)
+    constraint.revise(state)
+
+    constraint.currentNoGoods shouldBe 3
+    constraint.currentLiterals shouldBe 9
+
+    constraint.reduction = NoGoods.Size
+    constraint.maxLiterals = 5
+    constraint.clearInactive()
+    constraint.currentNoGoods shouldBe 2
+    constraint.currentLiterals shouldBe 5
+
+    constraint.threshold = 1
+    constraint.clearInactive()
+    constraint.currentNoGoods shouldBe 1
+    constraint.currentLiterals shouldBe 2
+
+    // Remaining nogood is still propagated
+    val assigned = state.assign(vars(0), 1)
+    constraint.event(assigned, Assignment, 0)
+    constraint.revise(assigned).dom(vars(1)) should contain theSameElementsAs Seq(2, 3)
+  }
+
 }
@@ -0,0 +1,69 @@
+package concrete.generator
+
+import java.io.DataOutputStream
+import java.nio.file.Files
+
+import concrete.constraint.extension.{MDDRelation, Relation}
+import mdd.MDD
+import org.scalatest.{FlatSpec, Matchers}
+
+import scala.util.Using
+
+class RelationInternerTest extends FlatSpec with Matchers {
+
+  private val tuples = Seq(Array(1, 2, 3), Array(1, 3, 4), Array(1, 2, 5), Array(2, 3, 5))
+
+  "RelationInterner" should "share relations with the same tuples" in {
+    val interner = new RelationInterner(None, 1000)
+    val r1 = interner(MDD.fromSeq(tuples))(new MDDRelation(_))
+    val r2 = interner(MDD.fromSeq(tuples.reverse))(new MDDRelation(_))
+    val r3 = interner(MDD.fromSeq(tuples.tail))(new MDDRelation(_))
+
+    r2 should be theSameInstanceAs r1
+    r3 should not be theSameInstanceAs(r1)
+    r3 should have size 3
+  }
+
+  it should "read relations back from the cache directory" in {
+    val dir = Files.createTempDirectory("relations")
+    var built = List[Relation]()
+
+    def build(m: MDD): Relation = {
+      val r = new MDDRelation(m)
+      built ::= r
+      r
+    }
+
+    try {
+      new RelationInterner(Some(dir), 1000)(MDD.fromSeq(tuples))(build)
+      val (key, _) = RelationInterner.hash(MDD.fromSeq(tuples))
+      val file = dir.resolve(key.fileName)
+      Using.resource(Files.list(dir))(_.count()) shouldBe 1
+      Files.exists(file) shouldBe true
+
+      // Replace the cached diagram by other tuples, so that reading it can be observed
+      val marker = MDD.fromSeq(Seq(Array(7, 7, 7), Array(7, 8, 9), Array(8, 8, 8), Array(9, 8, 7)))
+      val out = new DataOutputStream(Files.newOutputStream(file))
+      try {
+        RelationInterner.write(marker, key, RelationInterner.hash(marker)._2, out)
+      } finally {
+        out.close()
+      }
+
+      val r = new RelationInterner(Some(dir), 1000)(MDD.fromSeq(tuples.reverse))(build)
+      built should have size 2
+      r.iterator.map(_.toSeq).toSeq should contain theSameElementsAs marker.iterator.map(_.toSeq).toSeq
+    } finally {
+      Using.resource(Files.list(dir))(_.forEach(f => Files.delete(f)))
+      Files.delete(dir)
+    }
+  }
+
+  it should "not hash large relations" in {
+    val interner = new RelationInterner(None, 3)
+    val r1 = interner(MDD.fromSeq(tuples))(new MDDRelation(_))
+    val r2 = interner(MDD.fromSeq(tuples))(new MDDRelation(_))
+    r2 should not be theSameInstanceAs(r1)
+  }
+
+}
@@ -4,11 +4,15 @@ import org.scalatest.{FlatSpec, Inspectors, Matchers}
 import org.scalatest.concurrent.TimeLimits
 import org.scalatestplus.scalacheck.ScalaCheckPropertyChecks
 
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{Await, Future}
+
 object IntNode {
   var id: Int = 0
 }
 
-case class IntNode(v: Int) extends Identified with PTag {
+case class IntNode(v: Int) extends Identified with PTag with DLNode[IntNode] {
   val id: Int = IntNode.id
   IntNode.id += 1
 }
@@ -25,10 +29,61 @@ final class PriorityQueueTest extends FlatSpec with Matchers with TimeLimits wit
 
   "BinaryHeap" should "be correctly ordered" in test(new BinaryHeap[IntNode]())
 
+  "DAryHeap" should "be correctly ordered" in test(new DAryHeap[IntNode]())
+
   "BinomialHeap" should "be correctly ordered" in test(new BinomialHeap[IntNode]())
 
   "FibonacciHeap" should "be correctly ordered" in test(new FibonacciHeap[IntNode]())
 
+  "TournamentPriorityQueue" should "be correctly ordered" in test(new TournamentPriorityQueue[IntNode]())
+
+  "RadixHeap" should "be correctly ordered" in test(new RadixHeap[IntNode]())
+
+  "AdaptiveQueue" should "be correctly ordered" in test(new AdaptiveQueue[IntNode]())
+
+  it should "be correctly ordered when migrating" in test(new AdaptiveQueue[IntNode](8, 1.0))
+
+  it should "migrate between tiny and large queue backends" in {
+    val q = new AdaptiveQueue[IntNode](8, 1.0)
+    q.backend shouldBe a[BinaryHeap[_]]
+
+    // A single queued element: scanning a bit vector is cheaper than a heap
+    for (i <- 0 until 16) {
+      val n = IntNode(i)
+      q.offer(n, n.v)
+      q.poll() shouldBe n
+    }
+    q.backend shouldBe a[BitVectorPriorityQueue[_]]
+    val migrations = q.nbMigrations
+    migrations should be > 0L
+
+    // Many queued elements: back to the heap, contents must be preserved
+    val nodes = Seq.tabulate(200)(i => IntNode((i * 7919) % 200))
+    for (n <- nodes) q.offer(n, n.v)
+    val polled = Iterator.continually(q.poll()).take(nodes.size).map(_.v).toList
+    polled shouldBe nodes.map(_.v).sorted
+    q shouldBe empty
+    q.backend shouldBe a[BinaryHeap[_]]
+    q.nbMigrations should be > migrations
+  }
+
+  "MultiQueue" should "poll each element once under concurrent access" in {
+    val q = new MultiQueue[IntNode]()
+    val nodes = IndexedSeq.tabulate(10000)(IntNode(_))
+
+    // Each node is offered concurrently by two threads
+    val offers = for (group <- nodes.grouped(1000).toSeq; _ <- 0 until 2) yield Future {
+      group.count(n => q.offer(n, n.v))
+    }
+    Await.result(Future.sequence(offers), 10.seconds).sum shouldBe nodes.size
+
+    val polls = Seq.fill(4)(Future {
+      Iterator.continually(q.poll()).takeWhile(_ != null).toList
+    })
+    Await.result(Future.sequence(polls), 10.seconds).flatten should contain theSameElementsAs nodes
+    q shouldBe empty
+  }
+
   //  @Test(timeout = 5000)
   //  def testScalaFibonacciHeap() {
   //    test(new ScalaFibonacciHeap[IntNode](key))
@@ -0,0 +1,29 @@
+package concrete.util
+
+import org.scalatest.{FlatSpec, Matchers}
+
+class HistogramTest extends FlatSpec with Matchers {
+
+  "Histogram" should "compute percentiles with bounded relative error" in {
+    val h = new Histogram
+    for (i <- 1 to 100000) h.record(i)
+
+    h.count shouldBe 100000
+    h.max shouldBe 100000
+    h.mean shouldBe 50000.5 +- 1e-6
+
+    for (p <- Seq(1.0, 50.0, 90.0, 99.0)) {
+      val expected = p * 1000
+      h.percentile(p).toDouble should (be >= expected and be <= expected * (1 + 1.0 / (1 << Histogram.SUB_BITS)))
+    }
+    h.percentile(100) shouldBe 100000
+  }
+
+  it should "record small values exactly" in {
+    val h = new Histogram
+    Seq(0L, 1L, 2L, 3L).foreach(h.record)
+    h.percentile(50) shouldBe 1
+    h.percentile(100) shouldBe 3
+  }
+
+}
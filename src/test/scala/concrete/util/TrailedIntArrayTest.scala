@@ -0,0 +1,25 @@
+package concrete.util
+
+import org.scalatest.{FlatSpec, Matchers}
+
+class TrailedIntArrayTest extends FlatSpec with Matchers {
+
+  "TrailedIntArray" should "keep older versions valid" in {
+    val a0 = TrailedIntArray(Array(0, 1, 2))
+    val b1 = a0.batch()
+    b1(0) = 5
+    b1(0) = 6
+    b1(2) = 7
+    val a1 = b1.commit()
+    val b2 = a1.batch()
+    b2(1) = 8
+    val a2 = b2.commit()
+
+    a0.batch().commit() should be theSameInstanceAs a0
+    (0 until 3).map(a2(_)) shouldBe Seq(6, 8, 7)
+    (0 until 3).map(a0(_)) shouldBe Seq(0, 1, 2)
+    (0 until 3).map(a1(_)) shouldBe Seq(6, 1, 7)
+    (0 until 3).map(a2(_)) shouldBe Seq(6, 8, 7)
+  }
+
+}
@@ -0,0 +1,46 @@
+package concrete.util
+
+import concrete.{MAC, ParameterManager, PortfolioTest, Satisfy}
+import org.scalatest.{FlatSpec, Matchers}
+
+class TrailedStoreTest extends FlatSpec with Matchers {
+
+  "TrailedStore" should "keep older versions valid" in {
+    val s0 = TrailedStore(Seq("a", "b", "c"))
+    val s1 = s0.updated(1, "d")
+    val s2 = s1.updated(2, "e")
+    val s3 = s1.updated(0, "f")
+
+    s2(1) shouldBe "d"
+    s2(2) shouldBe "e"
+    s0(1) shouldBe "b"
+    s3(0) shouldBe "f"
+    s3(2) shouldBe "c"
+    s2(0) shouldBe "a"
+    s1(0) shouldBe "a"
+    s1(2) shouldBe "c"
+    s0(0) shouldBe "a"
+  }
+
+  it should "grow" in {
+    val s0 = TrailedStore.empty[String]
+    val s1 = (0 until 100).foldLeft(s0)((s, i) => s.updated(i, i.toString))
+
+    s1.size shouldBe 100
+    s1(99) shouldBe "99"
+    s1.get(100) shouldBe None
+    s0.get(0) shouldBe None
+  }
+
+  it should "not allocate versions for identical updates" in {
+    val s0 = TrailedStore(Seq("a"))
+    s0.updated(0, s0(0)) should be theSameInstanceAs s0
+  }
+
+  it should "solve with trailed states" in {
+    val problem = PortfolioTest.qp(8, _ => Satisfy)
+    val solver = MAC(problem, problem.variables.toSeq, new ParameterManager().updated("state.trail", ())).get
+    solver.toSeq.size shouldBe 92
+  }
+
+}